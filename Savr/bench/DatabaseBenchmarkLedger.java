@@ -0,0 +1,118 @@
+import savr.bench.BenchmarkLedger;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BenchmarkLedger backed by a DatabaseManager on a file database with the
+ * balanced performance profile
+ */
+public class DatabaseBenchmarkLedger implements BenchmarkLedger {
+    private final DatabaseManager db;
+    private ColumnarLedger columnar;
+    private ParallelAggregator singleThreaded;
+    private ParallelAggregator parallel;
+
+    public DatabaseBenchmarkLedger(Path file) {
+        db = new DatabaseManager(DatabaseConfig.forPath(file, PerformanceProfile.BALANCED));
+    }
+
+    @Override
+    public int addGenerated(long seed, int rows, LocalDate startDate, LocalDate endDate, int batchSize) {
+        return new LedgerGenerator(seed, rows, startDate, endDate, 1.0).writeTo(db, batchSize);
+    }
+
+    @Override
+    public int addTransaction(long amountCents, LocalDate date, String category, String paymentMethod) {
+        return db.addTransaction(amountCents, date, category, paymentMethod, false, false);
+    }
+
+    @Override
+    public boolean updateTransaction(int transactionId, long amountCents, LocalDate date, String category,
+                                     String paymentMethod) {
+        return db.updateTransaction(transactionId, amountCents, date, category, paymentMethod, false, false);
+    }
+
+    @Override
+    public boolean deleteTransaction(int transactionId) {
+        return db.deleteTransaction(transactionId);
+    }
+
+    @Override
+    public List<?> getAllTransactions() {
+        return db.getAllTransactions();
+    }
+
+    @Override
+    public List<?> getTransactionsByDateRange(LocalDate startDate, LocalDate endDate) {
+        return db.getTransactionsByDateRange(startDate, endDate);
+    }
+
+    @Override
+    public Map<String, Long> getCategoryTotals(LocalDate startDate, LocalDate endDate, Boolean isIncome) {
+        return db.getCategoryTotals(startDate, endDate, isIncome);
+    }
+
+    @Override
+    public Map<String, Long> getPaymentMethodTotals(LocalDate startDate, LocalDate endDate, Boolean isIncome) {
+        return db.getPaymentMethodTotals(startDate, endDate, isIncome);
+    }
+
+    @Override
+    public Map<String, Long> getMonthlyTotals(LocalDate startDate, LocalDate endDate, Boolean isIncome) {
+        return db.getMonthlyTotals(startDate, endDate, isIncome);
+    }
+
+    @Override
+    public void rebuildAggregateCache() {
+        db.getAggregateCache().rebuild(db);
+    }
+
+    @Override
+    public Object readAggregateCache() {
+        AggregateCache cache = db.getAggregateCache();
+        cache.getCategoryTotals(false);
+        cache.getPaymentMethodTotals(false);
+        cache.getMonthlyTotals(true);
+        return cache.getMonthlyTotals(false);
+    }
+
+    @Override
+    public int loadColumnar() {
+        columnar = ColumnarLedger.load(db);
+        singleThreaded = new ParallelAggregator(1);
+        parallel = new ParallelAggregator();
+        return columnar.size();
+    }
+
+    @Override
+    public long[] columnarExpenseCategoryTotals() {
+        return columnar.sumByCategory(columnar.filter(null, null, false, null));
+    }
+
+    @Override
+    public long[] columnarMonthlyTotals() {
+        return columnar.sumByMonth(null);
+    }
+
+    @Override
+    public Object aggregateSingleThreaded() {
+        return singleThreaded.aggregate(columnar);
+    }
+
+    @Override
+    public Object aggregateParallel() {
+        return parallel.aggregate(columnar);
+    }
+
+    @Override
+    public void close() {
+        if (columnar != null) {
+            singleThreaded.shutdown();
+            parallel.shutdown();
+        }
+        db.closeConnection();
+    }
+}
@@ -0,0 +1,65 @@
+package savr.bench;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The ledger operations the benchmarks measure. JMH only accepts benchmark
+ * classes in a named package, and a named package cannot refer to the
+ * application classes in the default package, so the benchmarks call them
+ * through this interface, implemented by DatabaseBenchmarkLedger.
+ */
+public interface BenchmarkLedger {
+
+    /**
+     * Opens the database in file, creating it if needed
+     */
+    static BenchmarkLedger open(Path file) {
+        try {
+            return (BenchmarkLedger) Class.forName("DatabaseBenchmarkLedger").getConstructor(Path.class)
+                    .newInstance(file);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot open benchmark ledger " + file, e);
+        }
+    }
+
+    /**
+     * Inserts rows from a seeded LedgerGenerator with addTransactions
+     *
+     * @return Number of rows committed
+     */
+    int addGenerated(long seed, int rows, LocalDate startDate, LocalDate endDate, int batchSize);
+
+    int addTransaction(long amountCents, LocalDate date, String category, String paymentMethod);
+    boolean updateTransaction(int transactionId, long amountCents, LocalDate date, String category,
+                              String paymentMethod);
+    boolean deleteTransaction(int transactionId);
+
+    List<?> getAllTransactions();
+    List<?> getTransactionsByDateRange(LocalDate startDate, LocalDate endDate);
+    Map<String, Long> getCategoryTotals(LocalDate startDate, LocalDate endDate, Boolean isIncome);
+    Map<String, Long> getPaymentMethodTotals(LocalDate startDate, LocalDate endDate, Boolean isIncome);
+    Map<String, Long> getMonthlyTotals(LocalDate startDate, LocalDate endDate, Boolean isIncome);
+
+    void rebuildAggregateCache();
+
+    /**
+     * Takes the snapshots the charts read from the aggregate cache
+     */
+    Object readAggregateCache();
+
+    /**
+     * Loads the ledger into the columnar store for the methods below
+     *
+     * @return Number of rows loaded
+     */
+    int loadColumnar();
+    long[] columnarExpenseCategoryTotals();
+    long[] columnarMonthlyTotals();
+    Object aggregateSingleThreaded();
+    Object aggregateParallel();
+
+    void close();
+}
@@ -0,0 +1,270 @@
+package savr.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for the DatabaseManager hot paths and the in-memory
+ * aggregation, at 10k, 1M and 10M rows. Each dataset is generated once by
+ * LedgerGenerator into the directory named by savr.bench.dir (default: the
+ * temp directory) and reused by later runs. Read benchmarks share it, while
+ * write benchmarks get a private copy per trial, so read figures are always
+ * taken against exactly the advertised number of rows.
+ *
+ * Build and run: mvn -Pbench package, then java -jar target/benchmarks.jar
+ * with any JMH options, e.g. -p rows=10000 or a benchmark name regex. The
+ * GC profiler (-prof gc) is always added, so every result comes with
+ * allocation per operation and GC counts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+// getAllTransactions materializes every row, which needs a few GB at 10M rows
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SavrBenchmark {
+    private static final int BATCH_SIZE = 1000;
+    private static final int LOAD_BATCH_SIZE = 10_000;
+
+    private static final long SEED = 42;
+    private static final LocalDate START_DATE = LocalDate.of(2015, 1, 1);
+    private static final int DAYS = 3650;
+    private static final LocalDate END_DATE = START_DATE.plusDays(DAYS - 1);
+
+    /**
+     * The shared, read-only ledger of a given size
+     */
+    @State(Scope.Benchmark)
+    public static class Dataset {
+        @Param({"10000", "1000000", "10000000"})
+        public int rows;
+
+        BenchmarkLedger ledger;
+        final Random random = new Random(SEED);
+
+        @Setup(Level.Trial)
+        public void open() throws IOException {
+            ledger = BenchmarkLedger.open(datasetFile(rows));
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            ledger.close();
+        }
+
+        LocalDate randomDate() {
+            return START_DATE.plusDays(random.nextInt(DAYS));
+        }
+    }
+
+    /**
+     * A private copy of the ledger that write benchmarks may change
+     */
+    @State(Scope.Benchmark)
+    public static class WritableDataset {
+        @Param({"10000", "1000000", "10000000"})
+        public int rows;
+
+        Path file;
+        BenchmarkLedger ledger;
+        int lastId;
+        final Random random = new Random(SEED);
+
+        @Setup(Level.Trial)
+        public void open() throws IOException {
+            file = Files.createTempFile("savr-bench-", ".db");
+            Files.copy(datasetFile(rows), file, StandardCopyOption.REPLACE_EXISTING);
+            ledger = BenchmarkLedger.open(file);
+            lastId = ledger.addTransaction(1234, randomDate(), "Food", "Cash");
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            ledger.close();
+            deleteDatabase(file);
+        }
+
+        LocalDate randomDate() {
+            return START_DATE.plusDays(random.nextInt(DAYS));
+        }
+    }
+
+    /**
+     * The shared ledger loaded into the columnar store
+     */
+    @State(Scope.Benchmark)
+    public static class Columnar {
+        BenchmarkLedger ledger;
+
+        @Setup(Level.Trial)
+        public void load(Dataset dataset) {
+            ledger = dataset.ledger;
+            int loaded = ledger.loadColumnar();
+            if (loaded != dataset.rows) {
+                throw new IllegalStateException("Dataset holds " + loaded + " rows, expected " + dataset.rows);
+            }
+        }
+    }
+
+    /**
+     * The generated ledger of a given size, created on first use
+     */
+    private static Path datasetFile(int rows) throws IOException {
+        Path directory = Paths.get(System.getProperty("savr.bench.dir", System.getProperty("java.io.tmpdir")));
+        Path file = directory.resolve("savr-bench-" + rows + "-" + SEED + ".db");
+        if (Files.exists(file)) {
+            return file;
+        }
+
+        // Generated under a temporary name, so an interrupted run never leaves a short dataset behind
+        Path partial = directory.resolve(file.getFileName() + ".part");
+        deleteDatabase(partial);
+        long startTime = System.nanoTime();
+        BenchmarkLedger ledger = BenchmarkLedger.open(partial);
+        int written = ledger.addGenerated(SEED, rows, START_DATE, END_DATE, LOAD_BATCH_SIZE);
+        ledger.close();
+        if (written != rows) {
+            deleteDatabase(partial);
+            throw new IOException("Generated only " + written + " of " + rows + " rows");
+        }
+        Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println(String.format("Generated %,d row dataset %s in %.1f s", rows, file,
+                (System.nanoTime() - startTime) / 1e9));
+        return file;
+    }
+
+    private static void deleteDatabase(Path file) throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(file.resolveSibling(file.getFileName() + "-wal"));
+        Files.deleteIfExists(file.resolveSibling(file.getFileName() + "-shm"));
+    }
+
+    @Benchmark
+    public int addTransaction(WritableDataset data) {
+        return data.lastId = data.ledger.addTransaction(1234, data.randomDate(), "Food", "Cash");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int addTransactionsBatch(WritableDataset data) {
+        return data.ledger.addGenerated(SEED + 1, BATCH_SIZE, START_DATE, END_DATE, BATCH_SIZE);
+    }
+
+    @Benchmark
+    public boolean updateTransaction(WritableDataset data) {
+        return data.ledger.updateTransaction(data.lastId, 5678, data.randomDate(), "Housing", "Debit Card");
+    }
+
+    @Benchmark
+    public int deleteAndAddTransaction(WritableDataset data) {
+        data.ledger.deleteTransaction(data.lastId);
+        return data.lastId = data.ledger.addTransaction(1234, data.randomDate(), "Food", "Cash");
+    }
+
+    @Benchmark
+    public List<?> getAllTransactions(Dataset data) {
+        return data.ledger.getAllTransactions();
+    }
+
+    @Benchmark
+    public List<?> getTransactionsByDateRange30Days(Dataset data) {
+        LocalDate from = data.randomDate();
+        return data.ledger.getTransactionsByDateRange(from, from.plusDays(30));
+    }
+
+    @Benchmark
+    public Map<String, Long> getCategoryTotalsScan(Dataset data) {
+        // Partial months at both ends, so the raw rows are scanned
+        return data.ledger.getCategoryTotals(START_DATE.plusDays(3), END_DATE.minusDays(2), false);
+    }
+
+    @Benchmark
+    public Map<String, Long> getPaymentMethodTotalsScan(Dataset data) {
+        return data.ledger.getPaymentMethodTotals(START_DATE.plusDays(3), END_DATE.minusDays(2), false);
+    }
+
+    @Benchmark
+    public Map<String, Long> getMonthlyTotalsScan(Dataset data) {
+        return data.ledger.getMonthlyTotals(START_DATE.plusDays(3), END_DATE.minusDays(2), null);
+    }
+
+    @Benchmark
+    public Map<String, Long> getCategoryTotalsSummary(Dataset data) {
+        return data.ledger.getCategoryTotals(null, null, false);
+    }
+
+    @Benchmark
+    public Map<String, Long> getMonthlyTotalsSummary(Dataset data) {
+        return data.ledger.getMonthlyTotals(null, null, null);
+    }
+
+    @Benchmark
+    public void aggregateCacheRebuild(Dataset data) {
+        data.ledger.rebuildAggregateCache();
+    }
+
+    @Benchmark
+    public Object aggregateCacheSnapshots(Dataset data) {
+        return data.ledger.readAggregateCache();
+    }
+
+    @Benchmark
+    public long[] columnarCategoryTotals(Columnar columnar) {
+        return columnar.ledger.columnarExpenseCategoryTotals();
+    }
+
+    @Benchmark
+    public long[] columnarMonthlyTotals(Columnar columnar) {
+        return columnar.ledger.columnarMonthlyTotals();
+    }
+
+    @Benchmark
+    public Object parallelAggregateSingleThread(Columnar columnar) {
+        return columnar.ledger.aggregateSingleThreaded();
+    }
+
+    @Benchmark
+    public Object parallelAggregate(Columnar columnar) {
+        return columnar.ledger.aggregateParallel();
+    }
+
+    /**
+     * Runs the benchmarks selected by the JMH command line options, with
+     * the GC profiler added
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,181 @@
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-memory totals in cents by category, payment method, month and day,
+ * split into income and expenses. Built once from the database and then kept current
+ * by applying each insert, update and delete as a delta, so charts can be
+ * drawn without touching the transactions table.
+ */
+public class AggregateCache implements TransactionListener {
+    private static final int EXPENSE = 0;
+    private static final int INCOME = 1;
+
+    private final Map<String, long[]> categoryTotals = new HashMap<>();
+    private final Map<String, long[]> paymentMethodTotals = new HashMap<>();
+    private final Map<String, long[]> monthlyTotals = new HashMap<>();
+    private final Map<LocalDate, long[]> dailyTotals = new HashMap<>();
+
+    /**
+     * Replaces the cached totals with fresh aggregates of the transactions table
+     *
+     * @param db Database to aggregate
+     */
+    public synchronized void rebuild(DatabaseManager db) {
+        categoryTotals.clear();
+        paymentMethodTotals.clear();
+        monthlyTotals.clear();
+        dailyTotals.clear();
+        load(db, categoryTotals, paymentMethodTotals, monthlyTotals, dailyTotals);
+    }
+
+    /**
+     * Adds a newly inserted transaction to the totals
+     */
+    @Override
+    public synchronized void onInsert(Transaction t) {
+        apply(t, 1);
+    }
+
+    /**
+     * Moves an updated transaction's amount from its old groups to its new ones
+     */
+    @Override
+    public synchronized void onUpdate(Transaction before, Transaction after) {
+        apply(before, -1);
+        apply(after, 1);
+    }
+
+    /**
+     * Removes a deleted transaction from the totals
+     */
+    @Override
+    public synchronized void onDelete(Transaction t) {
+        apply(t, -1);
+    }
+
+    public synchronized Map<String, Long> getCategoryTotals(boolean isIncome) {
+        return snapshot(categoryTotals, isIncome);
+    }
+
+    public synchronized Map<String, Long> getPaymentMethodTotals(boolean isIncome) {
+        return snapshot(paymentMethodTotals, isIncome);
+    }
+
+    public synchronized Map<String, Long> getMonthlyTotals(boolean isIncome) {
+        return snapshot(monthlyTotals, isIncome);
+    }
+
+    public synchronized Map<LocalDate, Long> getDailyTotals(boolean isIncome) {
+        return snapshot(dailyTotals, isIncome);
+    }
+
+    /**
+     * Compares the cached totals with a fresh aggregation of the transactions
+     * table (not the summary tables, which are themselves derived).
+     * If they differ, the differences are logged and the cache is rebuilt.
+     *
+     * @param db Database to compare against
+     * @return true if the cache matched the database
+     */
+    public synchronized boolean verify(DatabaseManager db) {
+        Map<String, long[]> freshCategories = new HashMap<>();
+        Map<String, long[]> freshPaymentMethods = new HashMap<>();
+        Map<String, long[]> freshMonths = new HashMap<>();
+        Map<LocalDate, long[]> freshDays = new HashMap<>();
+        load(db, freshCategories, freshPaymentMethods, freshMonths, freshDays);
+
+        boolean consistent = matches("category", categoryTotals, freshCategories)
+                & matches("payment method", paymentMethodTotals, freshPaymentMethods)
+                & matches("month", monthlyTotals, freshMonths)
+                & matches("day", dailyTotals, freshDays);
+
+        if (!consistent) {
+            categoryTotals.clear();
+            categoryTotals.putAll(freshCategories);
+            paymentMethodTotals.clear();
+            paymentMethodTotals.putAll(freshPaymentMethods);
+            monthlyTotals.clear();
+            monthlyTotals.putAll(freshMonths);
+            dailyTotals.clear();
+            dailyTotals.putAll(freshDays);
+            System.out.println("Aggregate cache was out of date and has been rebuilt.");
+        }
+        return consistent;
+    }
+
+    private static void load(DatabaseManager db, Map<String, long[]> categories,
+                             Map<String, long[]> paymentMethods, Map<String, long[]> months,
+                             Map<LocalDate, long[]> days) {
+        for (int type = EXPENSE; type <= INCOME; type++) {
+            boolean isIncome = type == INCOME;
+            fill(categories, db.scanCategoryTotals(isIncome), type);
+            fill(paymentMethods, db.scanPaymentMethodTotals(isIncome), type);
+            fill(months, db.scanMonthlyTotals(isIncome), type);
+            fill(days, db.getDailyTotals(isIncome), type);
+        }
+    }
+
+    private static <K> void fill(Map<K, long[]> target, Map<K, Long> totals, int type) {
+        for (Map.Entry<K, Long> entry : totals.entrySet()) {
+            target.computeIfAbsent(entry.getKey(), k -> new long[2])[type] = entry.getValue();
+        }
+    }
+
+    private void apply(Transaction t, int sign) {
+        int type = t.isIncome() ? INCOME : EXPENSE;
+        long amount = sign * t.getAmountCents();
+        add(categoryTotals, t.getCategory(), type, amount);
+        add(paymentMethodTotals, t.getPaymentMethod(), type, amount);
+        add(monthlyTotals, monthKey(t.getDate()), type, amount);
+        add(dailyTotals, t.getDate(), type, amount);
+    }
+
+    private static <K> void add(Map<K, long[]> totals, K key, int type, long amount) {
+        long[] values = totals.computeIfAbsent(key, k -> new long[2]);
+        values[type] += amount;
+        if (values[EXPENSE] == 0 && values[INCOME] == 0) {
+            totals.remove(key);
+        }
+    }
+
+    private static <K> Map<K, Long> snapshot(Map<K, long[]> totals, boolean isIncome) {
+        int type = isIncome ? INCOME : EXPENSE;
+        Map<K, Long> result = new TreeMap<>();
+        for (Map.Entry<K, long[]> entry : totals.entrySet()) {
+            long value = entry.getValue()[type];
+            if (entry.getKey() != null && value != 0) {
+                result.put(entry.getKey(), value);
+            }
+        }
+        return result;
+    }
+
+    private static <K> boolean matches(String label, Map<K, long[]> cached, Map<K, long[]> fresh) {
+        boolean consistent = true;
+        Set<K> keys = new HashSet<>(cached.keySet());
+        keys.addAll(fresh.keySet());
+
+        for (K key : keys) {
+            long[] a = cached.getOrDefault(key, new long[2]);
+            long[] b = fresh.getOrDefault(key, new long[2]);
+            for (int type = EXPENSE; type <= INCOME; type++) {
+                if (a[type] != b[type]) {
+                    System.err.println(String.format("Aggregate mismatch for %s '%s' (%s): cached %s, database %s",
+                            label, key, type == INCOME ? "income" : "expense",
+                            Money.format(a[type]), Money.format(b[type])));
+                    consistent = false;
+                }
+            }
+        }
+        return consistent;
+    }
+
+    private static String monthKey(LocalDate date) {
+        return date.getYear() + "-" + String.format("%02d", date.getMonthValue());
+    }
+}
@@ -0,0 +1,327 @@
+import javax.swing.SwingUtilities;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs DatabaseManager calls on background threads so the Swing event
+ * dispatch thread never waits on SQLite. Writes run one at a time, in the
+ * order they were submitted, on a single writer thread; reads run on a pool
+ * of reader threads sized to the database's reader connections, so a slow
+ * import does not hold up a refresh. Small writes that queue up behind each
+ * other are committed together (see runInTransaction). Results are
+ * delivered as CompletableFutures; use onEdt to apply them back on the UI
+ * thread.
+ */
+public class AsyncDatabaseManager {
+    // Most small writes committed together, bounding how long the writer is held
+    private static final int MAX_GROUP_SIZE = 64;
+
+    /**
+     * A queued write and the future for its result
+     */
+    private static class Write<T> {
+        private final Function<DatabaseManager, T> work;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final boolean groupable;
+        private T result;
+        private Throwable error;
+
+        Write(Function<DatabaseManager, T> work, boolean groupable) {
+            this.work = work;
+            this.groupable = groupable;
+        }
+
+        void run(DatabaseManager db) {
+            try {
+                result = work.apply(db);
+            } catch (Throwable t) {
+                error = t;
+            }
+        }
+
+        void finish(boolean committed) {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else if (!committed) {
+                future.completeExceptionally(new IllegalStateException("Write group was rolled back"));
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+
+    private final DatabaseManager dbManager;
+    private final ExecutorService writeExecutor;
+    private final ExecutorService readExecutor;
+
+    // Drained in order by the writer thread, which is its only consumer
+    private final Queue<Write<?>> writes = new ConcurrentLinkedQueue<>();
+
+    // Most recent request per key, so a newer request can cancel a stale one
+    private final Map<String, CompletableFuture<?>> latestRequests = new ConcurrentHashMap<>();
+
+    public AsyncDatabaseManager(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+        // SQLite allows one writer at a time, so all writes go through one thread
+        this.writeExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "savr-db");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger readerThreads = new AtomicInteger();
+        this.readExecutor = Executors.newFixedThreadPool(Math.max(1, dbManager.getReaderCount()), r -> {
+            Thread thread = new Thread(r, "savr-db-reader-" + readerThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs work against the database on the writer thread, after every
+     * write submitted before it
+     *
+     * @param work Function receiving the DatabaseManager
+     * @return Future completed with the function's result
+     */
+    public <T> CompletableFuture<T> submit(Function<DatabaseManager, T> work) {
+        return enqueue(new Write<>(work, false));
+    }
+
+    /**
+     * Like submit, but the write may be committed in one database
+     * transaction with the small writes queued next to it. Only for single
+     * row writes that do not commit themselves.
+     */
+    private <T> CompletableFuture<T> submitGrouped(Function<DatabaseManager, T> work) {
+        return enqueue(new Write<>(work, true));
+    }
+
+    private <T> CompletableFuture<T> enqueue(Write<T> write) {
+        writes.add(write);
+        writeExecutor.execute(this::drainWrites);
+        return write.future;
+    }
+
+    /**
+     * Runs the write at the head of the queue, together with the groupable
+     * writes right behind it when it is groupable itself. There is one call
+     * per write, so calls that find the queue empty have nothing left to do.
+     */
+    private void drainWrites() {
+        List<Write<?>> group = new ArrayList<>();
+        Write<?> head;
+        while ((head = writes.peek()) != null && group.size() < MAX_GROUP_SIZE) {
+            if (!head.groupable && !group.isEmpty()) {
+                break;
+            }
+            writes.poll();
+            // Skip requests that were cancelled while they were queued
+            if (!head.future.isDone()) {
+                group.add(head);
+            }
+            if (!head.groupable) {
+                break;
+            }
+        }
+
+        if (group.size() == 1) {
+            group.get(0).run(dbManager);
+            group.get(0).finish(true);
+        } else if (!group.isEmpty()) {
+            boolean committed = dbManager.runInTransaction(() -> {
+                for (Write<?> write : group) {
+                    write.run(dbManager);
+                }
+            });
+            for (Write<?> write : group) {
+                write.finish(committed);
+            }
+        }
+    }
+
+    /**
+     * Runs a read on one of the reader threads. Reads are not ordered with
+     * writes still queued, and see the data as of their last commit.
+     *
+     * @param work Function receiving the DatabaseManager; must not write
+     * @return Future completed with the function's result
+     */
+    public <T> CompletableFuture<T> submitRead(Function<DatabaseManager, T> work) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        readExecutor.execute(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(work.apply(dbManager));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Like submitRead, but cancels any earlier request made with the same key
+     * that has not completed yet. Used for refreshes where only the newest
+     * result matters.
+     *
+     * @param key Identifies the kind of request, e.g. "graphs"
+     * @param work Function receiving the DatabaseManager
+     * @return Future completed with the function's result
+     */
+    public <T> CompletableFuture<T> submitLatest(String key, Function<DatabaseManager, T> work) {
+        CompletableFuture<T> future = submitRead(work);
+        CompletableFuture<?> previous = latestRequests.put(key, future);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        future.whenComplete((result, error) -> latestRequests.remove(key, future));
+        return future;
+    }
+
+    public CompletableFuture<Integer> addTransaction(long amountCents, LocalDate date, String category,
+                                                     String paymentMethod, boolean isIncome, boolean recurring) {
+        return submitGrouped(db -> db.addTransaction(amountCents, date, category, paymentMethod, isIncome, recurring));
+    }
+
+    public CompletableFuture<Integer> addTransactions(Iterable<Transaction> transactions) {
+        return submit(db -> db.addTransactions(transactions));
+    }
+
+    public CompletableFuture<DatabaseManager.BulkInsertReport> bulkInsert(Iterable<Transaction> transactions,
+                                                                          int batchSize) {
+        return submit(db -> db.bulkInsert(transactions, batchSize));
+    }
+
+    public CompletableFuture<List<Transaction>> getAllTransactions() {
+        return submitRead(DatabaseManager::getAllTransactions);
+    }
+
+    public CompletableFuture<List<Transaction>> getTransactionsByDateRange(LocalDate startDate, LocalDate endDate) {
+        return submitRead(db -> db.getTransactionsByDateRange(startDate, endDate));
+    }
+
+    public CompletableFuture<Integer> getTransactionCount() {
+        return submitRead(DatabaseManager::getTransactionCount);
+    }
+
+    public CompletableFuture<List<Transaction>> getTransactionsPage(int offset, int limit) {
+        return submitRead(db -> db.getTransactionsPage(offset, limit));
+    }
+
+    public CompletableFuture<List<Transaction>> getTransactionsAfter(LocalDate afterDate, int afterId, int limit) {
+        return submitRead(db -> db.getTransactionsAfter(afterDate, afterId, limit));
+    }
+
+    public CompletableFuture<List<Transaction>> searchTransactions(TransactionQuery query, int offset, int limit) {
+        return submitRead(db -> db.searchTransactions(query, offset, limit));
+    }
+
+    public CompletableFuture<List<Transaction>> searchTransactionsAfter(TransactionQuery query, LocalDate afterDate,
+                                                                       int afterId, int limit) {
+        return submitRead(db -> db.searchTransactionsAfter(query, afterDate, afterId, limit));
+    }
+
+    public CompletableFuture<Boolean> updateTransaction(int transactionId, long amountCents, LocalDate date,
+                                                        String category, String paymentMethod,
+                                                        boolean isIncome, boolean recurring) {
+        return submitGrouped(db -> db.updateTransaction(transactionId, amountCents, date, category, paymentMethod,
+                isIncome, recurring));
+    }
+
+    public CompletableFuture<Boolean> deleteTransaction(int transactionId) {
+        return submitGrouped(db -> db.deleteTransaction(transactionId));
+    }
+
+    public CompletableFuture<Integer> addRecurrenceRule(RecurrenceRule rule) {
+        return submitGrouped(db -> db.addRecurrenceRule(rule));
+    }
+
+    public CompletableFuture<List<RecurrenceRule>> getRecurrenceRules() {
+        return submitRead(DatabaseManager::getRecurrenceRules);
+    }
+
+    public CompletableFuture<Boolean> deleteRecurrenceRule(int ruleId) {
+        return submitGrouped(db -> db.deleteRecurrenceRule(ruleId));
+    }
+
+    public CompletableFuture<Integer> materializeRecurringTransactions(LocalDate asOf, int limit) {
+        return submit(db -> db.materializeRecurringTransactions(asOf, limit));
+    }
+
+    public CompletableFuture<List<ChangeEvent>> getChangesSince(long afterSeq, int limit) {
+        return submitRead(db -> db.getChangesSince(afterSeq, limit));
+    }
+
+    public CompletableFuture<Boolean> saveChangeLogPosition(String consumer, long seq) {
+        return submit(db -> db.saveChangeLogPosition(consumer, seq));
+    }
+
+    public CompletableFuture<Integer> pruneChangesBefore(long seq) {
+        return submit(db -> db.pruneChangesBefore(seq));
+    }
+
+    public CompletableFuture<Boolean> setBudget(Budget budget) {
+        return submitGrouped(db -> db.setBudget(budget));
+    }
+
+    public CompletableFuture<Boolean> deleteBudget(String category, YearMonth month) {
+        return submitGrouped(db -> db.deleteBudget(category, month));
+    }
+
+    /**
+     * Applies a result on the Swing event dispatch thread once it is ready.
+     * Cancelled requests are dropped silently and failures are logged.
+     *
+     * @param future Pending database result
+     * @param action UI update to run with the result
+     */
+    public static <T> void onEdt(CompletableFuture<T> future, Consumer<T> action) {
+        future.whenComplete((result, error) -> {
+            if (error == null) {
+                SwingUtilities.invokeLater(() -> action.accept(result));
+                return;
+            }
+
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            if (!(cause instanceof CancellationException)) {
+                System.err.println("Background database request failed: " + cause.getMessage());
+                cause.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Finishes queued work, closes the database connections and stops the threads
+     */
+    public void shutdown() {
+        readExecutor.shutdown();
+        writeExecutor.shutdown();
+        try {
+            if (!readExecutor.awaitTermination(5, TimeUnit.SECONDS)
+                    || !writeExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                System.err.println("Timed out waiting for database work to finish.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dbManager.closeConnection();
+    }
+}
@@ -0,0 +1,317 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Online backups of a ledger. A backup is a consistent snapshot written by
+ * DatabaseManager.snapshotTo, which runs on a reader so that under WAL
+ * writers carry on while it copies, then gzipped into the backup directory
+ * as savr-&lt;timestamp&gt;.db.gz. After each backup, old ones are pruned by
+ * count and age. A restore decompresses an archive and runs a full
+ * integrity check on it before anything touches the live database.
+ *
+ * Settings are system properties: savr.backup.dir (default ./backups),
+ * savr.backup.keep (how many of the newest backups to keep, default 10) and
+ * savr.backup.max.age.days (0, the default, keeps backups of any age).
+ */
+public class BackupManager {
+    private static final String PREFIX = "savr-";
+    private static final String SUFFIX = ".db.gz";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    // Large buffers keep the compressor fed; the fastest level is used, as pages compress well anyway
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final DatabaseManager db;
+    private final Path directory;
+    private final int keepCount;
+    private final int maxAgeDays;
+
+    /**
+     * Backs up db with the settings from the system properties
+     */
+    public BackupManager(DatabaseManager db) {
+        this(db, Paths.get(System.getProperty("savr.backup.dir", "backups")),
+                Integer.getInteger("savr.backup.keep", 10), Integer.getInteger("savr.backup.max.age.days", 0));
+    }
+
+    /**
+     * @param db Database to back up and restore
+     * @param directory Where backups are kept; created when needed
+     * @param keepCount Number of newest backups kept; older ones are deleted
+     * @param maxAgeDays Backups older than this are deleted, or 0 for no age limit.
+     *                   The newest backup is always kept.
+     */
+    public BackupManager(DatabaseManager db, Path directory, int keepCount, int maxAgeDays) {
+        if (keepCount < 1) {
+            throw new IllegalArgumentException("At least one backup must be kept: " + keepCount);
+        }
+        this.db = db;
+        this.directory = directory;
+        this.keepCount = keepCount;
+        this.maxAgeDays = maxAgeDays;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Takes a compressed snapshot of the database, then prunes old backups
+     *
+     * @return The new backup, or null if it failed
+     */
+    public Path backup() {
+        long startTime = System.nanoTime();
+        String name = PREFIX + LocalDateTime.now().format(TIMESTAMP);
+        Path snapshot = directory.resolve(name + ".db");
+        Path partial = directory.resolve(name + SUFFIX + ".part");
+        Path archive = directory.resolve(name + SUFFIX);
+
+        try {
+            Files.createDirectories(directory);
+            if (!db.snapshotTo(snapshot)) {
+                return null;
+            }
+            long snapshotBytes = Files.size(snapshot);
+
+            try (InputStream in = Files.newInputStream(snapshot);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(partial), BUFFER_SIZE) {
+                     {
+                         def.setLevel(Deflater.BEST_SPEED);
+                     }
+                 }) {
+                copy(in, out);
+            }
+            // Only complete archives ever carry the backup name
+            Files.move(partial, archive, StandardCopyOption.ATOMIC_MOVE);
+
+            System.out.println(String.format("Backed up to %s (%,d KB, %,d KB compressed) in %d ms.", archive,
+                    snapshotBytes / 1024, Files.size(archive) / 1024, (System.nanoTime() - startTime) / 1_000_000));
+        } catch (IOException e) {
+            System.err.println("Error writing backup " + archive + ": " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        } finally {
+            deleteQuietly(snapshot);
+            deleteQuietly(partial);
+        }
+
+        prune();
+        return archive;
+    }
+
+    /**
+     * Backups in the backup directory
+     *
+     * @return Paths of the backups, newest first
+     */
+    public List<Path> listBackups() {
+        List<Path> backups = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return backups;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path entry : entries) {
+                if (backupTime(entry) != null) {
+                    backups.add(entry);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error listing backups in " + directory + ": " + e.getMessage());
+        }
+        // The timestamp format sorts chronologically by name
+        backups.sort(Collections.reverseOrder());
+        return backups;
+    }
+
+    /**
+     * Deletes the backups the retention settings no longer cover
+     *
+     * @return The number of backups deleted
+     */
+    public int prune() {
+        List<Path> backups = listBackups();
+        LocalDateTime cutoff = maxAgeDays > 0 ? LocalDateTime.now().minusDays(maxAgeDays) : null;
+        int deleted = 0;
+        for (int i = 1; i < backups.size(); i++) {
+            Path backup = backups.get(i);
+            if (i >= keepCount || (cutoff != null && backupTime(backup).isBefore(cutoff))) {
+                try {
+                    Files.deleteIfExists(backup);
+                    deleted++;
+                } catch (IOException e) {
+                    System.err.println("Error deleting old backup " + backup + ": " + e.getMessage());
+                }
+            }
+        }
+        if (deleted > 0) {
+            System.out.println("Deleted " + deleted + " old backups.");
+        }
+        return deleted;
+    }
+
+    /**
+     * Replaces the contents of the database with a backup. The archive is
+     * decompressed and checked first, so a damaged backup leaves the
+     * database untouched.
+     *
+     * @param archive Backup to restore, as returned by backup or listBackups
+     * @return true if the backup was restored
+     */
+    public boolean restore(Path archive) {
+        long startTime = System.nanoTime();
+        Path restored = directory.resolve("restore-" + LocalDateTime.now().format(TIMESTAMP) + ".db");
+
+        try {
+            Files.createDirectories(directory);
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(archive), BUFFER_SIZE);
+                 OutputStream out = Files.newOutputStream(restored)) {
+                copy(in, out);
+            }
+
+            if (!verify(restored)) {
+                System.err.println("Backup " + archive + " failed its integrity check and was not restored.");
+                return false;
+            }
+            if (!db.restoreFrom(restored)) {
+                return false;
+            }
+
+            System.out.println(String.format("Restored %s in %d ms.", archive,
+                    (System.nanoTime() - startTime) / 1_000_000));
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error reading backup " + archive + ": " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        } finally {
+            deleteQuietly(restored);
+        }
+    }
+
+    /**
+     * Checks that a file is an intact Savr ledger: SQLite's full integrity
+     * check passes and the schema version table is present
+     *
+     * @param databaseFile Uncompressed database file
+     * @return true if the file can be restored
+     */
+    public static boolean verify(Path databaseFile) {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile);
+             Statement statement = connection.createStatement()) {
+            List<String> problems = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery("PRAGMA integrity_check")) {
+                while (rs.next()) {
+                    problems.add(rs.getString(1));
+                }
+            }
+            if (!problems.equals(Collections.singletonList("ok"))) {
+                System.err.println("Integrity check of " + databaseFile + " failed: " + problems);
+                return false;
+            }
+
+            try (ResultSet rs = statement.executeQuery("SELECT MAX(version) FROM schema_version")) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            System.err.println("Error checking " + databaseFile + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * When a backup was taken, from its name
+     *
+     * @return The time, or null if the file is not named like a backup
+     */
+    private static LocalDateTime backupTime(Path backup) {
+        String name = backup.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(name.substring(PREFIX.length(), name.length() - SUFFIX.length()), TIMESTAMP);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Error deleting " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Command line entry point.
+     *
+     * Usage: BackupManager (backup | list | restore archive) [--ledger name]
+     * Without --ledger the configured default database is used.
+     */
+    public static void main(String[] args) {
+        if (args.length == 0 || (args[0].equals("restore") && args.length < 2)) {
+            System.err.println("Usage: BackupManager (backup | list | restore archive) [--ledger name]");
+            System.exit(1);
+        }
+
+        String ledger = null;
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--ledger")) {
+                ledger = args[i + 1];
+            }
+        }
+
+        DatabaseManager db = new DatabaseManager(ledger != null ? DatabaseConfig.forLedger(ledger)
+                : DatabaseConfig.load());
+        BackupManager backups = db.getBackupManager();
+        boolean succeeded = true;
+        switch (args[0]) {
+            case "backup":
+                succeeded = backups.backup() != null;
+                break;
+            case "list":
+                for (Path backup : backups.listBackups()) {
+                    System.out.println(backup);
+                }
+                break;
+            case "restore":
+                succeeded = backups.restore(Paths.get(args[1]));
+                break;
+            default:
+                System.err.println("Unknown command: " + args[0]);
+                succeeded = false;
+        }
+        db.closeConnection();
+        System.exit(succeeded ? 0 : 1);
+    }
+}
@@ -0,0 +1,35 @@
+import java.time.YearMonth;
+
+/**
+ * Spending limit for one category, either for every month or for a single
+ * month. A single-month budget takes precedence over the every-month one.
+ */
+public class Budget {
+    private final String category;
+    private final YearMonth month;
+    private final long limitCents;
+
+    /**
+     * @param category Expense category the limit applies to
+     * @param month Month the limit applies to, or null for every month
+     * @param limitCents Most that should be spent in the month, in cents
+     */
+    public Budget(String category, YearMonth month, long limitCents) {
+        if (limitCents <= 0) {
+            throw new IllegalArgumentException("Budget must be positive: " + Money.format(limitCents));
+        }
+        this.category = category;
+        this.month = month;
+        this.limitCents = limitCents;
+    }
+
+    public String getCategory() { return category; }
+    public YearMonth getMonth() { return month; }
+    public long getLimitCents() { return limitCents; }
+
+    @Override
+    public String toString() {
+        return String.format("Budget: %s %s for %s", Money.format(limitCents), category,
+                month == null ? "every month" : month);
+    }
+}
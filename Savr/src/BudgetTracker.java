@@ -0,0 +1,245 @@
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Running expense totals per category and month, checked against the
+ * budgets on every write. The totals are loaded once from the monthly
+ * category summary table and then kept current from each insert, update
+ * and delete, so a write costs a few hash lookups however large the ledger
+ * is. Crossing 80% or 100% of a budget raises a ThresholdEvent.
+ */
+public class BudgetTracker implements TransactionListener {
+    // Percentages of a budget that raise an event when spending goes past them
+    private static final int[] THRESHOLDS = {80, 100};
+
+    /**
+     * Told when spending in a category crosses a budget threshold
+     */
+    public interface Listener {
+        void onThresholdCrossed(ThresholdEvent event);
+    }
+
+    /**
+     * Spending in a category and month reached a percentage of its budget
+     */
+    public static class ThresholdEvent {
+        private final String category;
+        private final YearMonth month;
+        private final int threshold;
+        private final long spentCents;
+        private final long limitCents;
+
+        ThresholdEvent(String category, YearMonth month, int threshold, long spentCents, long limitCents) {
+            this.category = category;
+            this.month = month;
+            this.threshold = threshold;
+            this.spentCents = spentCents;
+            this.limitCents = limitCents;
+        }
+
+        public String getCategory() { return category; }
+        public YearMonth getMonth() { return month; }
+
+        /** The percentage crossed, 80 or 100 */
+        public int getThreshold() { return threshold; }
+        public long getSpentCents() { return spentCents; }
+        public long getLimitCents() { return limitCents; }
+
+        @Override
+        public String toString() {
+            return String.format("%s spending for %s has reached %d%% of its budget (%s of %s)",
+                    category, month, threshold, Money.format(spentCents), Money.format(limitCents));
+        }
+    }
+
+    /**
+     * A category's budget and spending for one month
+     */
+    public static class Status {
+        private final Budget budget;
+        private final YearMonth month;
+        private final long spentCents;
+
+        Status(Budget budget, YearMonth month, long spentCents) {
+            this.budget = budget;
+            this.month = month;
+            this.spentCents = spentCents;
+        }
+
+        /** The budget in effect, which may be the every-month one */
+        public Budget getBudget() { return budget; }
+        public YearMonth getMonth() { return month; }
+        public long getSpentCents() { return spentCents; }
+        public long getRemainingCents() { return budget.getLimitCents() - spentCents; }
+
+        public int getPercentUsed() {
+            return (int) (spentCents * 100 / budget.getLimitCents());
+        }
+    }
+
+    private final Map<String, Budget> everyMonthBudgets = new HashMap<>();
+    private final Map<YearMonth, Map<String, Budget>> monthBudgets = new HashMap<>();
+    private final Map<YearMonth, Map<String, long[]>> spent = new HashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Replaces the budgets and spending totals with those in the database
+     *
+     * @param db Database to load from
+     */
+    public synchronized void rebuild(DatabaseManager db) {
+        everyMonthBudgets.clear();
+        monthBudgets.clear();
+        spent.clear();
+        for (Budget budget : db.getBudgets()) {
+            putBudget(budget);
+        }
+        for (Map.Entry<YearMonth, Map<String, Long>> month : db.getMonthlyCategoryTotals(false).entrySet()) {
+            Map<String, long[]> categories = new HashMap<>();
+            for (Map.Entry<String, Long> category : month.getValue().entrySet()) {
+                categories.put(category.getKey(), new long[]{category.getValue()});
+            }
+            spent.put(month.getKey(), categories);
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Adds or replaces a budget. Spending already past a threshold of the
+     * new limit does not raise an event.
+     */
+    public synchronized void putBudget(Budget budget) {
+        if (budget.getMonth() == null) {
+            everyMonthBudgets.put(budget.getCategory(), budget);
+        } else {
+            monthBudgets.computeIfAbsent(budget.getMonth(), m -> new HashMap<>()).put(budget.getCategory(), budget);
+        }
+    }
+
+    /**
+     * Removes a budget
+     *
+     * @param category Category of the budget
+     * @param month Month of the budget, or null for the every-month budget
+     */
+    public synchronized void removeBudget(String category, YearMonth month) {
+        if (month == null) {
+            everyMonthBudgets.remove(category);
+        } else if (monthBudgets.containsKey(month)) {
+            monthBudgets.get(month).remove(category);
+        }
+    }
+
+    /**
+     * Budget and spending for every category with a budget in a month
+     *
+     * @return Statuses ordered by category
+     */
+    public synchronized List<Status> getStatus(YearMonth month) {
+        TreeSet<String> categories = new TreeSet<>(everyMonthBudgets.keySet());
+        categories.addAll(monthBudgets.getOrDefault(month, Collections.emptyMap()).keySet());
+
+        List<Status> statuses = new ArrayList<>();
+        for (String category : categories) {
+            statuses.add(new Status(budgetFor(category, month), month, getSpentCents(category, month)));
+        }
+        return statuses;
+    }
+
+    /**
+     * Expenses recorded for a category in a month, in cents
+     */
+    public synchronized long getSpentCents(String category, YearMonth month) {
+        long[] total = spent.getOrDefault(month, Collections.emptyMap()).get(category);
+        return total == null ? 0 : total[0];
+    }
+
+    @Override
+    public void onInsert(Transaction t) {
+        fire(change(null, t));
+    }
+
+    @Override
+    public void onUpdate(Transaction before, Transaction after) {
+        fire(change(before, after));
+    }
+
+    @Override
+    public void onDelete(Transaction t) {
+        change(t, null);
+    }
+
+    /**
+     * Moves removed's amount out of its total and added's into its own,
+     * returning the event for a threshold added's total went past
+     */
+    private synchronized ThresholdEvent change(Transaction removed, Transaction added) {
+        long[] from = removed == null ? null : counter(removed);
+        long[] to = added == null ? null : counter(added);
+        // Read before subtracting, so an update within one group is judged by its net change
+        long previous = to == null ? 0 : to[0];
+
+        if (from != null) {
+            from[0] -= removed.getAmountCents();
+        }
+        if (to == null) {
+            return null;
+        }
+        to[0] += added.getAmountCents();
+
+        YearMonth month = YearMonth.from(added.getDate());
+        Budget budget = budgetFor(added.getCategory(), month);
+        if (budget == null) {
+            return null;
+        }
+
+        // Only the highest threshold crossed is reported, e.g. one event when a write goes from 50% to 120%
+        long limit = budget.getLimitCents();
+        for (int i = THRESHOLDS.length - 1; i >= 0; i--) {
+            if (previous * 100 < limit * THRESHOLDS[i] && to[0] * 100 >= limit * THRESHOLDS[i]) {
+                return new ThresholdEvent(added.getCategory(), month, THRESHOLDS[i], to[0], limit);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The running total a transaction counts towards, or null for income
+     * and uncategorized rows, which no budget covers
+     */
+    private long[] counter(Transaction t) {
+        if (t.isIncome() || t.getCategory() == null) {
+            return null;
+        }
+        return spent.computeIfAbsent(YearMonth.from(t.getDate()), m -> new HashMap<>())
+                .computeIfAbsent(t.getCategory(), c -> new long[1]);
+    }
+
+    private Budget budgetFor(String category, YearMonth month) {
+        Map<String, Budget> overrides = monthBudgets.get(month);
+        Budget budget = overrides == null ? null : overrides.get(category);
+        return budget != null ? budget : everyMonthBudgets.get(category);
+    }
+
+    private void fire(ThresholdEvent event) {
+        if (event == null) {
+            return;
+        }
+        for (Listener listener : listeners) {
+            listener.onThresholdCrossed(event);
+        }
+    }
+}
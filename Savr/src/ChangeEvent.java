@@ -0,0 +1,62 @@
+/**
+ * One committed change to the transactions table, read from the change
+ * log. Sequence numbers increase with every change, so a consumer that
+ * remembers the last one it applied can catch up with
+ * DatabaseManager.getChangesSince. A bulk insert is logged as one BULK
+ * entry covering a range of new IDs, without the rows themselves.
+ */
+public class ChangeEvent {
+
+    public enum Type { INSERT, UPDATE, DELETE, BULK }
+
+    private final long seq;
+    private final Type type;
+    private final int transactionId;
+    private final int lastTransactionId;
+    private final Transaction before;
+    private final Transaction after;
+
+    /**
+     * @param seq Position in the change log
+     * @param type Kind of change
+     * @param transactionId ID of the changed transaction
+     * @param before Row before the change, or null for an insert
+     * @param after Row after the change, or null for a delete
+     */
+    public ChangeEvent(long seq, Type type, int transactionId, Transaction before, Transaction after) {
+        this(seq, type, transactionId, transactionId, before, after);
+    }
+
+    /**
+     * @param seq Position in the change log
+     * @param type Kind of change
+     * @param transactionId ID of the changed transaction, or the first ID of a bulk insert
+     * @param lastTransactionId The last ID of a bulk insert, otherwise transactionId
+     * @param before Row before the change, or null for an insert or bulk insert
+     * @param after Row after the change, or null for a delete or bulk insert
+     */
+    public ChangeEvent(long seq, Type type, int transactionId, int lastTransactionId,
+                       Transaction before, Transaction after) {
+        this.seq = seq;
+        this.type = type;
+        this.transactionId = transactionId;
+        this.lastTransactionId = lastTransactionId;
+        this.before = before;
+        this.after = after;
+    }
+
+    public long getSeq() { return seq; }
+    public Type getType() { return type; }
+    public int getTransactionId() { return transactionId; }
+    public int getLastTransactionId() { return lastTransactionId; }
+    public Transaction getBefore() { return before; }
+    public Transaction getAfter() { return after; }
+
+    @Override
+    public String toString() {
+        if (type == Type.BULK) {
+            return String.format("Change #%d: BULK transactions #%d-#%d", seq, transactionId, lastTransactionId);
+        }
+        return String.format("Change #%d: %s transaction #%d", seq, type, transactionId);
+    }
+}
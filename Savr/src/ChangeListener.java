@@ -0,0 +1,22 @@
+import java.util.List;
+
+/**
+ * Receives the change log entries written by each committed write, in
+ * sequence order. Called on the thread that made the write, so listeners
+ * should hand the work off rather than block it.
+ */
+public interface ChangeListener {
+
+    /**
+     * @param changes Entries committed by one write; a bulk insert
+     *                delivers one call per batch
+     */
+    void onChanges(List<ChangeEvent> changes);
+
+    /**
+     * Called instead of onChanges when the data was replaced wholesale, as
+     * by restoring a backup, so anything derived from it must be reloaded
+     */
+    default void onReset() {
+    }
+}
@@ -0,0 +1,134 @@
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A chart drawn once into an image on a background thread and then simply
+ * copied to the screen, so repaints (tab switches, overlapping windows) cost
+ * a blit instead of redoing the layout. The image is redrawn only when the
+ * panel is resized or invalidate is called because the data or view changed;
+ * until the new image is ready the previous one is shown stretched.
+ */
+public class ChartPanel extends JPanel {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Draws a chart. Called off the event dispatch thread, so it must only
+     * use its arguments and immutable data, never Swing components.
+     */
+    public interface Renderer {
+        void render(Graphics2D g2d, int width, int height);
+    }
+
+    // One thread for all charts; a render is a few milliseconds and charts rarely change together
+    private static final ExecutorService RENDER_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "savr-chart-render");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Renderer renderer;
+
+    // Touched only on the EDT
+    private BufferedImage image;
+    private int imageWidth;
+    private int imageHeight;
+    // Bumped on every request, so a render finishing after a newer request is dropped
+    private volatile int generation;
+
+    public ChartPanel(Renderer renderer) {
+        this.renderer = renderer;
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                invalidateImage();
+            }
+        });
+    }
+
+    /**
+     * Redraws the chart in the background, e.g. after its data or view changed
+     */
+    public void invalidateImage() {
+        int width = getWidth();
+        int height = getHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        int requested = ++generation;
+        // Captured on the EDT, since the renderer may not read the component
+        Color background = getBackground();
+        Font font = getFont();
+        double scale = pixelScale();
+
+        RENDER_EXECUTOR.execute(() -> {
+            // Skip renders superseded while they were queued
+            if (requested != generation) {
+                return;
+            }
+            BufferedImage rendered = new BufferedImage((int) Math.ceil(width * scale),
+                    (int) Math.ceil(height * scale), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = rendered.createGraphics();
+            try {
+                g2d.scale(scale, scale);
+                g2d.setColor(background);
+                g2d.fillRect(0, 0, width, height);
+                g2d.setFont(font);
+                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                        RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                renderer.render(g2d, width, height);
+            } catch (RuntimeException e) {
+                System.err.println("Error rendering chart: " + e.getMessage());
+                e.printStackTrace();
+                return;
+            } finally {
+                g2d.dispose();
+            }
+
+            SwingUtilities.invokeLater(() -> {
+                if (requested == generation) {
+                    image = rendered;
+                    imageWidth = width;
+                    imageHeight = height;
+                    repaint();
+                }
+            });
+        });
+    }
+
+    /**
+     * Device pixels per user-space pixel, so the image stays sharp on HiDPI screens
+     */
+    private double pixelScale() {
+        GraphicsConfiguration configuration = getGraphicsConfiguration();
+        return configuration == null ? 1 : Math.max(1, configuration.getDefaultTransform().getScaleX());
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (image == null) {
+            return;
+        }
+        if (imageWidth == getWidth() && imageHeight == getHeight()) {
+            g.drawImage(image, 0, 0, imageWidth, imageHeight, null);
+        } else {
+            // A resize is being rendered; stretch the old image until it is ready
+            ((Graphics2D) g).setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, getWidth(), getHeight(), null);
+        }
+    }
+}
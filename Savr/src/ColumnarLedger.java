@@ -0,0 +1,389 @@
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact in-memory copy of the ledger stored column by column in primitive
+ * arrays: amounts as long cents, dates as int epoch days, categories and
+ * payment methods as dictionary-encoded shorts, and the income/recurring
+ * flags as bitsets. A row costs about 18 bytes instead of the ~150 bytes of
+ * a Transaction object with its LocalDate and String references.
+ *
+ * Scans, filters and aggregates walk the arrays directly and do not
+ * allocate per row. Row selections are passed around as BitSets, where a
+ * null selection means every row.
+ */
+public class ColumnarLedger {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Receives one row at a time from scan(), as primitives
+     */
+    public interface RowVisitor {
+        void visit(int row, long amountCents, int epochDay, short categoryId, short paymentMethodId,
+                   boolean isIncome, boolean recurring);
+    }
+
+    /**
+     * Maps strings to small integer codes. Code 0 is reserved for null.
+     */
+    public static class Dictionary {
+        private final Map<String, Short> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        public Dictionary() {
+            values.add(null);
+        }
+
+        /**
+         * Returns the code for a value, assigning a new one if needed
+         */
+        public short encode(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Short code = codes.get(value);
+            if (code == null) {
+                if (values.size() > Short.MAX_VALUE) {
+                    throw new IllegalStateException("Too many distinct values for a dictionary column");
+                }
+                code = (short) values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        /**
+         * Returns the code for a value, or -1 if it has never been seen
+         */
+        public short lookup(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Short code = codes.get(value);
+            return code == null ? -1 : code;
+        }
+
+        public String decode(short code) {
+            return values.get(code);
+        }
+
+        public int size() {
+            return values.size();
+        }
+    }
+
+    private int size;
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private long[] amountCents = new long[INITIAL_CAPACITY];
+    private int[] epochDays = new int[INITIAL_CAPACITY];
+    private short[] categoryIds = new short[INITIAL_CAPACITY];
+    private short[] paymentMethodIds = new short[INITIAL_CAPACITY];
+    private final BitSet income = new BitSet();
+    private final BitSet recurring = new BitSet();
+    private final Dictionary categories = new Dictionary();
+    private final Dictionary paymentMethods = new Dictionary();
+    private int minEpochDay = Integer.MAX_VALUE;
+    private int maxEpochDay = Integer.MIN_VALUE;
+
+    /**
+     * Loads every transaction from the database in a single streaming pass
+     *
+     * @param db Database to copy
+     * @return The populated ledger
+     */
+    public static ColumnarLedger load(DatabaseManager db) {
+        long startTime = System.nanoTime();
+        ColumnarLedger ledger = new ColumnarLedger();
+        db.forEachTransaction(ledger::add);
+        ledger.trimToSize();
+        System.out.println(String.format("Columnar ledger loaded %,d rows (%,d KB) in %d ms.", ledger.size(),
+                ledger.estimateMemoryBytes() / 1024, (System.nanoTime() - startTime) / 1_000_000));
+        return ledger;
+    }
+
+    /**
+     * Appends a transaction
+     */
+    public void add(Transaction t) {
+        add(t.getId(), t.getAmountCents(), (int) t.getDate().toEpochDay(),
+                t.getCategory(), t.getPaymentMethod(), t.isIncome(), t.isRecurring());
+    }
+
+    /**
+     * Appends a row from its column values
+     */
+    public void add(int id, long cents, int epochDay, String category, String paymentMethod,
+                    boolean isIncome, boolean isRecurring) {
+        ensureCapacity(size + 1);
+        ids[size] = id;
+        amountCents[size] = cents;
+        epochDays[size] = epochDay;
+        categoryIds[size] = categories.encode(category);
+        paymentMethodIds[size] = paymentMethods.encode(paymentMethod);
+        income.set(size, isIncome);
+        recurring.set(size, isRecurring);
+        minEpochDay = Math.min(minEpochDay, epochDay);
+        maxEpochDay = Math.max(maxEpochDay, epochDay);
+        size++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, ids.length + (ids.length >> 1));
+        resize(newCapacity);
+    }
+
+    /**
+     * Shrinks the column arrays to the number of rows held
+     */
+    public void trimToSize() {
+        resize(Math.max(size, 1));
+    }
+
+    private void resize(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        amountCents = Arrays.copyOf(amountCents, capacity);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        categoryIds = Arrays.copyOf(categoryIds, capacity);
+        paymentMethodIds = Arrays.copyOf(paymentMethodIds, capacity);
+    }
+
+    /**
+     * Calls the visitor for each selected row, in insertion order
+     *
+     * @param rows Rows to visit, or null for all rows
+     */
+    public void scan(BitSet rows, RowVisitor visitor) {
+        if (rows == null) {
+            for (int row = 0; row < size; row++) {
+                visitRow(row, visitor);
+            }
+        } else {
+            for (int row = rows.nextSetBit(0); row >= 0 && row < size; row = rows.nextSetBit(row + 1)) {
+                visitRow(row, visitor);
+            }
+        }
+    }
+
+    private void visitRow(int row, RowVisitor visitor) {
+        visitor.visit(row, amountCents[row], epochDays[row], categoryIds[row], paymentMethodIds[row],
+                income.get(row), recurring.get(row));
+    }
+
+    /**
+     * Selects rows matching all of the given conditions
+     *
+     * @param startDate First date to include, or null
+     * @param endDate Last date to include, or null
+     * @param isIncome true for income, false for expenses, null for both
+     * @param category Category to match, or null for any category
+     * @return Selected rows
+     */
+    public BitSet filter(LocalDate startDate, LocalDate endDate, Boolean isIncome, String category) {
+        BitSet selected = new BitSet(size);
+        short categoryId = category == null ? -1 : categories.lookup(category);
+        if (category != null && categoryId < 0) {
+            return selected;
+        }
+
+        int fromDay = startDate == null ? Integer.MIN_VALUE : (int) startDate.toEpochDay();
+        int toDay = endDate == null ? Integer.MAX_VALUE : (int) endDate.toEpochDay();
+
+        for (int row = 0; row < size; row++) {
+            int day = epochDays[row];
+            if (day >= fromDay && day <= toDay && (categoryId < 0 || categoryIds[row] == categoryId)) {
+                selected.set(row);
+            }
+        }
+
+        if (isIncome != null) {
+            if (isIncome) {
+                selected.and(income);
+            } else {
+                selected.andNot(income);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Sums the selected amounts
+     *
+     * @param rows Rows to include, or null for all rows
+     * @return Total in cents
+     */
+    public long sumCents(BitSet rows) {
+        long total = 0;
+        if (rows == null) {
+            for (int row = 0; row < size; row++) {
+                total += amountCents[row];
+            }
+        } else {
+            for (int row = rows.nextSetBit(0); row >= 0 && row < size; row = rows.nextSetBit(row + 1)) {
+                total += amountCents[row];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Sums the selected amounts per category
+     *
+     * @param rows Rows to include, or null for all rows
+     * @return Totals in cents indexed by category code
+     */
+    public long[] sumByCategory(BitSet rows) {
+        return sumByCode(rows, categoryIds, categories.size());
+    }
+
+    /**
+     * Sums the selected amounts per payment method
+     *
+     * @param rows Rows to include, or null for all rows
+     * @return Totals in cents indexed by payment method code
+     */
+    public long[] sumByPaymentMethod(BitSet rows) {
+        return sumByCode(rows, paymentMethodIds, paymentMethods.size());
+    }
+
+    private long[] sumByCode(BitSet rows, short[] codes, int codeCount) {
+        long[] totals = new long[codeCount];
+        if (rows == null) {
+            for (int row = 0; row < size; row++) {
+                totals[codes[row]] += amountCents[row];
+            }
+        } else {
+            for (int row = rows.nextSetBit(0); row >= 0 && row < size; row = rows.nextSetBit(row + 1)) {
+                totals[codes[row]] += amountCents[row];
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Sums the selected amounts per calendar month
+     *
+     * @param rows Rows to include, or null for all rows
+     * @return Totals in cents indexed by months since getFirstMonth()
+     */
+    public long[] sumByMonth(BitSet rows) {
+        if (size == 0) {
+            return new long[0];
+        }
+
+        int[] monthOfDay = monthIndex();
+        long[] totals = new long[monthOfDay[monthOfDay.length - 1] + 1];
+        if (rows == null) {
+            for (int row = 0; row < size; row++) {
+                totals[monthOfDay[epochDays[row] - minEpochDay]] += amountCents[row];
+            }
+        } else {
+            for (int row = rows.nextSetBit(0); row >= 0 && row < size; row = rows.nextSetBit(row + 1)) {
+                totals[monthOfDay[epochDays[row] - minEpochDay]] += amountCents[row];
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Day-to-month lookup over the ledger's date range, so scans do no date
+     * math: entry (epochDay - getMinEpochDay()) is the number of months since
+     * getFirstMonth()
+     */
+    int[] monthIndex() {
+        if (size == 0) {
+            return new int[0];
+        }
+        YearMonth first = getFirstMonth();
+        int[] monthOfDay = new int[maxEpochDay - minEpochDay + 1];
+        LocalDate date = LocalDate.ofEpochDay(minEpochDay);
+        for (int i = 0; i < monthOfDay.length; i++, date = date.plusDays(1)) {
+            monthOfDay[i] = (date.getYear() - first.getYear()) * 12 + date.getMonthValue() - first.getMonthValue();
+        }
+        return monthOfDay;
+    }
+
+    /**
+     * Adds rows [fromRow, toRow) dated within [fromDay, toDay] to per-group
+     * totals. Each array holds two slots per group, expenses at code * 2 and
+     * income at code * 2 + 1; months are indexed through monthOfDay.
+     */
+    void accumulate(int fromRow, int toRow, int fromDay, int toDay, int[] monthOfDay,
+                    long[] categoryTotals, long[] paymentMethodTotals, long[] monthlyTotals) {
+        for (int row = fromRow; row < toRow; row++) {
+            int day = epochDays[row];
+            if (day < fromDay || day > toDay) {
+                continue;
+            }
+            long cents = amountCents[row];
+            int type = income.get(row) ? 1 : 0;
+            categoryTotals[categoryIds[row] * 2 + type] += cents;
+            paymentMethodTotals[paymentMethodIds[row] * 2 + type] += cents;
+            monthlyTotals[monthOfDay[day - minEpochDay] * 2 + type] += cents;
+        }
+    }
+
+    /**
+     * Turns per-code totals into a map of value to cents, skipping empty codes
+     */
+    public static Map<String, Long> toMap(Dictionary dictionary, long[] totals) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (short code = 0; code < totals.length; code++) {
+            if (totals[code] != 0) {
+                result.put(dictionary.decode(code), totals[code]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Turns per-month totals from sumByMonth into a map of yyyy-MM to cents
+     */
+    public Map<String, Long> toMonthMap(long[] totals) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        YearMonth month = getFirstMonth();
+        for (int i = 0; i < totals.length; i++, month = month.plusMonths(1)) {
+            if (totals[i] != 0) {
+                result.put(month.toString(), totals[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Rough heap footprint of the column arrays and bitsets
+     */
+    public long estimateMemoryBytes() {
+        return (long) ids.length * (4 + 8 + 4 + 2 + 2) + (income.size() + recurring.size()) / 8;
+    }
+
+    public int size() { return size; }
+    public int getId(int row) { return ids[row]; }
+    public long getAmountCents(int row) { return amountCents[row]; }
+    public int getEpochDay(int row) { return epochDays[row]; }
+    public short getCategoryId(int row) { return categoryIds[row]; }
+    public short getPaymentMethodId(int row) { return paymentMethodIds[row]; }
+    public boolean isIncome(int row) { return income.get(row); }
+    public boolean isRecurring(int row) { return recurring.get(row); }
+    public Dictionary getCategories() { return categories; }
+    public Dictionary getPaymentMethods() { return paymentMethods; }
+    public int getMinEpochDay() { return minEpochDay; }
+    public int getMaxEpochDay() { return maxEpochDay; }
+
+    /**
+     * Month of the earliest transaction, the base for sumByMonth indexes
+     */
+    public YearMonth getFirstMonth() {
+        return size == 0 ? YearMonth.now() : YearMonth.from(LocalDate.ofEpochDay(minEpochDay));
+    }
+}
@@ -0,0 +1,274 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The connections to one SQLite database: a single writer, since SQLite
+ * allows one writer at a time, and a fixed set of read-only readers that
+ * run alongside it under WAL, so reads never queue behind a bulk insert.
+ * Each connection has its own StatementCache. Connections are borrowed as
+ * Leases and returned by closing them, ideally with try-with-resources.
+ *
+ * The writer lease is re-entrant, and a thread holding it gets the writer
+ * for its reads too, so it sees its own uncommitted changes. Readers are
+ * only opened for WAL file databases; otherwise every lease is the writer.
+ * The number of readers defaults to min(4, cores) and can be set with the
+ * savr.db.readers system property.
+ */
+public class ConnectionPool implements AutoCloseable {
+    // How long a connection waits on a lock held by another connection before failing
+    private static final int BUSY_TIMEOUT_MS = 5000;
+
+    /**
+     * An open connection and its statement cache
+     */
+    private static class PooledConnection {
+        private final Connection connection;
+        private final StatementCache statements;
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.statements = new StatementCache(connection);
+        }
+    }
+
+    /**
+     * A borrowed connection; closing it hands the connection back
+     */
+    public class Lease implements AutoCloseable {
+        private final PooledConnection pooled;
+        private boolean closed;
+
+        private Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        public Connection getConnection() {
+            return pooled.connection;
+        }
+
+        /**
+         * Whether this is the writer, rather than a read-only reader
+         */
+        public boolean isWriter() {
+            return pooled == writer;
+        }
+
+        /**
+         * Returns a cached prepared statement for this connection
+         */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            return pooled.statements.prepare(sql);
+        }
+
+        public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+            return pooled.statements.prepare(sql, autoGeneratedKeys);
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (isWriter()) {
+                writerLock.unlock();
+            } else {
+                readersInUse.decrementAndGet();
+                idleReaders.add(pooled);
+            }
+        }
+    }
+
+    private final PooledConnection writer;
+    private final ReentrantLock writerLock = new ReentrantLock(true);
+    private final List<PooledConnection> readers = new ArrayList<>();
+    private final BlockingQueue<PooledConnection> idleReaders;
+
+    // Wait times are in nanoseconds
+    private final AtomicLong writerAcquisitions = new AtomicLong();
+    private final AtomicLong writerWaits = new AtomicLong();
+    private final AtomicLong writerWaitNanos = new AtomicLong();
+    private final AtomicLong writerMaxWaitNanos = new AtomicLong();
+    private final AtomicLong readerAcquisitions = new AtomicLong();
+    private final AtomicLong readerWaits = new AtomicLong();
+    private final AtomicLong readerWaitNanos = new AtomicLong();
+    private final AtomicLong readerMaxWaitNanos = new AtomicLong();
+    private final AtomicInteger readersInUse = new AtomicInteger();
+    private final AtomicInteger peakReadersInUse = new AtomicInteger();
+
+    /**
+     * Opens the writer and savr.db.readers readers
+     */
+    public ConnectionPool(DatabaseConfig config) throws SQLException {
+        this(config, Integer.getInteger("savr.db.readers",
+                Math.min(4, Runtime.getRuntime().availableProcessors())));
+    }
+
+    /**
+     * @param config Database to connect to and the pragmas to apply
+     * @param readerCount Number of read-only connections; ignored (0) for
+     *                    in-memory databases and journal modes other than WAL
+     */
+    public ConnectionPool(DatabaseConfig config, int readerCount) throws SQLException {
+        writer = new PooledConnection(open(config));
+
+        // Shared-cache memory databases lock whole tables and rollback journals block
+        // readers during commits, so concurrent readers only pay off with WAL on a file
+        boolean concurrentReads = !config.getUrl().contains("mode=memory")
+                && config.getProfile().getJournalMode().equalsIgnoreCase("WAL");
+        int count = concurrentReads ? Math.max(0, readerCount) : 0;
+
+        idleReaders = new ArrayBlockingQueue<>(Math.max(1, count));
+        try {
+            for (int i = 0; i < count; i++) {
+                Connection connection = open(config);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("PRAGMA query_only = 1");
+                }
+                PooledConnection reader = new PooledConnection(connection);
+                readers.add(reader);
+                idleReaders.add(reader);
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private static Connection open(DatabaseConfig config) throws SQLException {
+        Connection connection = DriverManager.getConnection(config.getUrl());
+        try {
+            config.getProfile().apply(connection);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS);
+            }
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+
+    /**
+     * Borrows the writer, waiting while another thread holds it
+     */
+    public Lease writer() {
+        long startTime = System.nanoTime();
+        if (!writerLock.tryLock()) {
+            writerWaits.incrementAndGet();
+            writerLock.lock();
+        }
+        recordWait(startTime, writerAcquisitions, writerWaitNanos, writerMaxWaitNanos);
+        return new Lease(writer);
+    }
+
+    /**
+     * Borrows a reader, waiting while all of them are in use. Returns the
+     * writer instead when there are no readers or this thread already holds it.
+     */
+    public Lease reader() {
+        if (readers.isEmpty() || writerLock.isHeldByCurrentThread()) {
+            return writer();
+        }
+
+        long startTime = System.nanoTime();
+        PooledConnection reader = idleReaders.poll();
+        if (reader == null) {
+            readerWaits.incrementAndGet();
+            try {
+                reader = idleReaders.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for a database reader", e);
+            }
+        }
+        recordWait(startTime, readerAcquisitions, readerWaitNanos, readerMaxWaitNanos);
+        peakReadersInUse.accumulateAndGet(readersInUse.incrementAndGet(), Math::max);
+        return new Lease(reader);
+    }
+
+    private static void recordWait(long startTime, AtomicLong acquisitions, AtomicLong totalNanos,
+                                   AtomicLong maxNanos) {
+        long waited = System.nanoTime() - startTime;
+        acquisitions.incrementAndGet();
+        totalNanos.addAndGet(waited);
+        maxNanos.accumulateAndGet(waited, Math::max);
+    }
+
+    public int getReaderCount() {
+        return readers.size();
+    }
+
+    /**
+     * Acquisition counts, wait times and occupancy, for diagnostics
+     *
+     * @return Map of metric name to value; times are in milliseconds
+     */
+    public Map<String, String> getMetrics() {
+        Map<String, String> metrics = new LinkedHashMap<>();
+        metrics.put("pool_readers", String.valueOf(readers.size()));
+        metrics.put("pool_readers_in_use", String.valueOf(readersInUse.get()));
+        metrics.put("pool_readers_peak_in_use", String.valueOf(peakReadersInUse.get()));
+        metrics.put("pool_reader_acquisitions", String.valueOf(readerAcquisitions.get()));
+        metrics.put("pool_reader_waits", String.valueOf(readerWaits.get()));
+        metrics.put("pool_reader_wait_ms_total", millis(readerWaitNanos.get()));
+        metrics.put("pool_reader_wait_ms_max", millis(readerMaxWaitNanos.get()));
+        metrics.put("pool_writer_held", String.valueOf(writerLock.isLocked()));
+        metrics.put("pool_writer_queue", String.valueOf(writerLock.getQueueLength()));
+        metrics.put("pool_writer_acquisitions", String.valueOf(writerAcquisitions.get()));
+        metrics.put("pool_writer_waits", String.valueOf(writerWaits.get()));
+        metrics.put("pool_writer_wait_ms_total", millis(writerWaitNanos.get()));
+        metrics.put("pool_writer_wait_ms_max", millis(writerMaxWaitNanos.get()));
+
+        long size = 0;
+        long hits = 0;
+        long misses = 0;
+        for (PooledConnection pooled : connections()) {
+            size += pooled.statements.size();
+            hits += pooled.statements.getHits();
+            misses += pooled.statements.getMisses();
+        }
+        metrics.put("statement_cache_size", String.valueOf(size));
+        metrics.put("statement_cache_hits", String.valueOf(hits));
+        metrics.put("statement_cache_misses", String.valueOf(misses));
+        return metrics;
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / 1_000_000.0);
+    }
+
+    private List<PooledConnection> connections() {
+        List<PooledConnection> all = new ArrayList<>(readers);
+        all.add(writer);
+        return all;
+    }
+
+    /**
+     * Closes every connection, the writer last. Leases still out must not be
+     * used afterwards.
+     */
+    @Override
+    public void close() {
+        for (PooledConnection pooled : connections()) {
+            pooled.statements.close();
+            try {
+                pooled.connection.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing database connection: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Where a ledger database lives and how its connection is tuned.
+ *
+ * Settings are looked up in this order: system properties (savr.db.url,
+ * savr.db.path, savr.db.profile, savr.ledger.dir), environment variables
+ * (SAVR_DB_URL, SAVR_DB_PATH, SAVR_DB_PROFILE, SAVR_LEDGER_DIR), then the
+ * config file (db.url, db.path, db.profile, ledger.dir). The config file is
+ * the one named by savr.config, otherwise ./savr.properties or
+ * ~/.savr/savr.properties. Without any settings the database is the file
+ * Savr-db in the working directory. A path of ":memory:" gives an
+ * in-memory database.
+ */
+public class DatabaseConfig {
+    private static final String DEFAULT_PATH = "Savr-db";
+    private static final String MEMORY_PATH = ":memory:";
+    private static final String URL_PREFIX = "jdbc:sqlite:";
+
+    private final String url;
+    private final PerformanceProfile profile;
+
+    public DatabaseConfig(String url, PerformanceProfile profile) {
+        this.url = url;
+        this.profile = profile;
+    }
+
+    /**
+     * Resolves the default ledger from system properties, the environment
+     * and the config file
+     */
+    public static DatabaseConfig load() {
+        Properties file = loadConfigFile();
+        String url = setting("savr.db.url", "SAVR_DB_URL", "db.url", file);
+        if (url == null) {
+            String path = setting("savr.db.path", "SAVR_DB_PATH", "db.path", file);
+            url = urlForPath(path != null ? path : DEFAULT_PATH);
+        }
+        return new DatabaseConfig(url, profile(file));
+    }
+
+    /**
+     * Config for a named ledger stored as &lt;ledger dir&gt;/&lt;name&gt;.db, so several
+     * ledgers can be open at once, each with its own DatabaseManager
+     *
+     * @param name Ledger name, e.g. "checking"
+     */
+    public static DatabaseConfig forLedger(String name) {
+        if (!name.matches("[A-Za-z0-9_-]+")) {
+            throw new IllegalArgumentException("Ledger names may only contain letters, digits, '_' and '-': " + name);
+        }
+        Properties file = loadConfigFile();
+        String directory = setting("savr.ledger.dir", "SAVR_LEDGER_DIR", "ledger.dir", file);
+        Path path = Paths.get(directory != null ? directory : ".").resolve(name + ".db");
+        return new DatabaseConfig(urlForPath(path.toString()), profile(file));
+    }
+
+    /**
+     * Config for a private in-memory ledger, useful for tests and benchmarks.
+     * The database disappears once its last connection closes.
+     *
+     * @param name Distinguishes concurrent in-memory ledgers
+     */
+    public static DatabaseConfig inMemory(String name) {
+        return new DatabaseConfig(URL_PREFIX + "file:savr-" + name + "?mode=memory&cache=shared",
+                PerformanceProfile.BALANCED);
+    }
+
+    /**
+     * Config for a database file at an explicit path with the given profile
+     */
+    public static DatabaseConfig forPath(Path path, PerformanceProfile profile) {
+        return new DatabaseConfig(urlForPath(path.toString()), profile);
+    }
+
+    private static String urlForPath(String path) {
+        if (path.equals(MEMORY_PATH)) {
+            return inMemory("default").url;
+        }
+        return URL_PREFIX + path;
+    }
+
+    private static PerformanceProfile profile(Properties file) {
+        String name = setting("savr.db.profile", "SAVR_DB_PROFILE", "db.profile", file);
+        return name == null ? PerformanceProfile.BALANCED : PerformanceProfile.named(name);
+    }
+
+    private static String setting(String property, String environment, String key, Properties file) {
+        String value = System.getProperty(property);
+        if (isBlank(value)) {
+            value = System.getenv(environment);
+        }
+        if (isBlank(value)) {
+            value = file.getProperty(key);
+        }
+        return isBlank(value) ? null : value.trim();
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    private static Properties loadConfigFile() {
+        Properties properties = new Properties();
+        String configured = System.getProperty("savr.config");
+        Path[] candidates = configured != null
+                ? new Path[]{Paths.get(configured)}
+                : new Path[]{Paths.get("savr.properties"),
+                             Paths.get(System.getProperty("user.home"), ".savr", "savr.properties")};
+
+        for (Path candidate : candidates) {
+            if (Files.isRegularFile(candidate)) {
+                try (InputStream in = Files.newInputStream(candidate)) {
+                    properties.load(in);
+                    System.out.println("Loaded database settings from " + candidate.toAbsolutePath() + ".");
+                } catch (IOException e) {
+                    System.err.println("Error reading config file " + candidate + ": " + e.getMessage());
+                }
+                break;
+            }
+        }
+        return properties;
+    }
+
+    public String getUrl() { return url; }
+    public PerformanceProfile getProfile() { return profile; }
+
+    @Override
+    public String toString() {
+        return url + " [" + profile.getName() + "]";
+    }
+}
@@ -1,26 +1,126 @@
+import java.nio.file.Path;
 import java.sql.*;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Creates and manages the local database and the transactions table
  */
 public class DatabaseManager {
-    private static final String DB_URL = "jdbc:sqlite:C:\\Users\\ajthe\\IdeaProjects\\Savr\\Savr-db";
-    private Connection connection;
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+
+    // Newest change log entries kept when the ledger is opened; older ones are
+    // pruned unless a registered consumer has not read them yet
+    private static final long CHANGE_LOG_RETAINED = 100_000;
+
+    // Budget period meaning the limit applies to every month
+    private static final String EVERY_MONTH = "monthly";
+
+    // Summary tables kept current by triggers: table name and the column it groups by
+    // besides month and is_income (null for the plain income/expense totals)
+    private static final String[][] SUMMARY_TABLES = {
+            {"monthly_category_totals", "category"},
+            {"monthly_payment_totals", "payment_method"},
+            {"monthly_type_totals", null}
+    };
+
+    /**
+     * Outcome of a bulk insert: the rows committed and how long it took
+     */
+    public static class BulkInsertReport {
+        private final int rowsInserted;
+        private final long elapsedMillis;
+
+        BulkInsertReport(int rowsInserted, long elapsedMillis) {
+            this.rowsInserted = rowsInserted;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int getRowsInserted() { return rowsInserted; }
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        public double getRowsPerSecond() {
+            return elapsedMillis > 0 ? rowsInserted * 1000.0 / elapsedMillis : rowsInserted;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Inserted %,d transactions in %.2f s (%.0f rows/s)", rowsInserted,
+                    elapsedMillis / 1000.0, getRowsPerSecond());
+        }
+    }
+
+    private ConnectionPool pool;
+    private final DatabaseConfig config;
+    private final PerformanceProfile profile;
+
+    // Built on first use while holding the writer, then kept current through the listeners below
+    private volatile AggregateCache aggregateCache;
+    private volatile BudgetTracker budgetTracker;
+    private volatile BackupManager backupManager;
+
+    // Told about every committed insert, update and delete
+    private final List<TransactionListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Sent the change log entries of each write; publishedSeq is the last entry sent
+    private final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    private long publishedSeq;
+
+    // Set while runInTransaction is running, so changes are published once the group commits
+    private boolean grouping;
+
+    // TransactionListener callbacks of the running write group, delivered once it commits
+    private final List<Consumer<TransactionListener>> pendingEvents = new ArrayList<>();
 
     /**
-     * Initializes the database connection
+     * Initializes the database connection for the ledger described by the
+     * system properties, environment and config file (see DatabaseConfig)
      */
     public DatabaseManager() {
+        this(DatabaseConfig.load());
+    }
+
+    /**
+     * Initializes the database connections. Writes go through a single
+     * writer connection; reads use a pool of read-only connections (see
+     * ConnectionPool), so the manager can be called from several threads.
+     *
+     * @param config Location of the ledger and the connection pragmas to apply
+     */
+    public DatabaseManager(DatabaseConfig config) {
+        this.config = config;
+        this.profile = config.getProfile();
+        long startTime = System.nanoTime();
         try {
             Class.forName("org.sqlite.JDBC");
-            connection = DriverManager.getConnection(DB_URL);
+            pool = new ConnectionPool(config);
+            System.out.println("Opened " + config.getUrl() + " with performance profile " + profile +
+                    " and " + pool.getReaderCount() + " reader connections.");
 
-            createTransactionsTable();
+            int schemaVersion;
+            try (ConnectionPool.Lease lease = pool.writer()) {
+                createTransactionsTable(lease.getConnection());
+                schemaVersion = new SchemaMigrator(lease.getConnection()).migrate();
+                // After migrating, since the summary tables depend on the current amount column
+                createSummaryTables(lease);
+            }
+            long latestSeq = getLatestChangeSeq();
+            if (latestSeq > CHANGE_LOG_RETAINED) {
+                pruneChangesBefore(latestSeq - CHANGE_LOG_RETAINED + 1);
+            }
 
-            System.out.println("Database connection established successfully.");
+            System.out.println(String.format("Database connection established successfully " +
+                    "(schema version %d, startup took %d ms).",
+                    schemaVersion, (System.nanoTime() - startTime) / 1_000_000));
         } catch (ClassNotFoundException | SQLException e) {
             System.err.println("Database initialization error: " + e.getMessage());
             e.printStackTrace();
@@ -28,9 +128,10 @@ public class DatabaseManager {
     }
 
     /**
-     * Creates the transactions table (if not already made)
+     * Creates the transactions table (if not already made). This is the
+     * original schema; SchemaMigrator brings it up to date afterwards.
      */
-    private void createTransactionsTable() throws SQLException {
+    private void createTransactionsTable(Connection connection) throws SQLException {
         String createTableSQL = "CREATE TABLE IF NOT EXISTS transactions (" +
                 "transaction_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
                 "amount DECIMAL(10,2) NOT NULL, " +
@@ -48,10 +149,350 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * Creates the monthly summary tables and the triggers that keep them in
+     * step with the transactions table. Newly created tables are back-filled
+     * from the existing transactions.
+     */
+    private void createSummaryTables(ConnectionPool.Lease lease) throws SQLException {
+        try (Statement statement = lease.getConnection().createStatement()) {
+            for (String[] summary : SUMMARY_TABLES) {
+                String table = summary[0];
+                String column = summary[1];
+                String keyColumns = column == null ? "month, is_income" : "month, " + column + ", is_income";
+                boolean exists = tableExists(lease, table);
+
+                statement.execute("CREATE TABLE IF NOT EXISTS " + table + " (" +
+                        "month TEXT NOT NULL, " +
+                        (column == null ? "" : column + " VARCHAR(50) NOT NULL, ") +
+                        "is_income BOOLEAN NOT NULL, " +
+                        "total_cents INTEGER NOT NULL DEFAULT 0, " +
+                        "row_count INTEGER NOT NULL DEFAULT 0, " +
+                        "PRIMARY KEY (" + keyColumns + "))");
+
+                // Bulk inserts turn this off and update the totals once per batch instead
+                statement.execute("CREATE TRIGGER IF NOT EXISTS " + table + "_insert " +
+                        "AFTER INSERT ON transactions WHEN NOT EXISTS (SELECT 1 FROM bulk_insert) BEGIN " +
+                        summaryAddSQL(table, column, "NEW") +
+                        "END");
+                statement.execute("CREATE TRIGGER IF NOT EXISTS " + table + "_delete " +
+                        "AFTER DELETE ON transactions BEGIN " +
+                        summarySubtractSQL(table, column, "OLD") +
+                        "END");
+                statement.execute("CREATE TRIGGER IF NOT EXISTS " + table + "_update " +
+                        "AFTER UPDATE OF amount_cents, transaction_date, category, payment_method, is_income " +
+                        "ON transactions BEGIN " +
+                        summarySubtractSQL(table, column, "OLD") +
+                        summaryAddSQL(table, column, "NEW") +
+                        "END");
+
+                if (!exists) {
+                    statement.execute(summaryBackfillSQL(table, column));
+                    System.out.println("Summary table " + table + " created and back-filled.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes every summary table from the transactions table in one
+     * database transaction
+     *
+     * @return true if the rebuild succeeded
+     */
+    public boolean rebuildSummaryTables() {
+        try (ConnectionPool.Lease lease = pool.writer()) {
+            Connection connection = lease.getConnection();
+            long startTime = System.nanoTime();
+            boolean autoCommit = true;
+
+            try {
+                autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+
+                try (Statement statement = connection.createStatement()) {
+                    for (String[] summary : SUMMARY_TABLES) {
+                        statement.execute("DELETE FROM " + summary[0]);
+                        statement.execute(summaryBackfillSQL(summary[0], summary[1]));
+                    }
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                System.err.println("Error rebuilding summary tables: " + e.getMessage());
+                e.printStackTrace();
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackError) {
+                    System.err.println("Error rolling back summary rebuild: " + rollbackError.getMessage());
+                }
+                return false;
+            } finally {
+                try {
+                    connection.setAutoCommit(autoCommit);
+                } catch (SQLException e) {
+                    System.err.println("Error restoring auto-commit: " + e.getMessage());
+                }
+            }
+
+            System.out.println(String.format("Summary tables rebuilt in %d ms.",
+                    (System.nanoTime() - startTime) / 1_000_000));
+            return true;
+        }
+    }
+
+    private static boolean tableExists(ConnectionPool.Lease lease, String table) throws SQLException {
+        try (PreparedStatement pstmt = lease.prepare(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?")) {
+            pstmt.setString(1, table);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Month (yyyy-MM) of a transaction_date column. The driver stores DATE
+     * values as epoch milliseconds; ISO text is handled for older rows.
+     */
+    private static String monthExpression(String dateColumn) {
+        return "(CASE WHEN typeof(" + dateColumn + ") = 'integer' " +
+                "THEN strftime('%Y-%m', " + dateColumn + " / 1000, 'unixepoch', 'localtime') " +
+                "ELSE substr(" + dateColumn + ", 1, 7) END)";
+    }
+
+    /**
+     * Trigger statement adding row (NEW or OLD) to its summary group
+     */
+    private static String summaryAddSQL(String table, String column, String row) {
+        String keyColumns = column == null ? "month, is_income" : "month, " + column + ", is_income";
+        return "INSERT INTO " + table + " (" + keyColumns + ", total_cents, row_count) VALUES (" +
+                monthExpression(row + ".transaction_date") + ", " +
+                (column == null ? "" : "IFNULL(" + row + "." + column + ", ''), ") +
+                row + ".is_income, " + row + ".amount_cents, 1) " +
+                "ON CONFLICT (" + keyColumns + ") DO UPDATE SET " +
+                "total_cents = total_cents + excluded.total_cents, row_count = row_count + 1; ";
+    }
+
+    /**
+     * Trigger statements removing row (NEW or OLD) from its summary group,
+     * dropping the group once it is empty
+     */
+    private static String summarySubtractSQL(String table, String column, String row) {
+        String where = " WHERE month = " + monthExpression(row + ".transaction_date") +
+                (column == null ? "" : " AND " + column + " = IFNULL(" + row + "." + column + ", '')") +
+                " AND is_income = " + row + ".is_income";
+        return "UPDATE " + table + " SET total_cents = total_cents - " + row + ".amount_cents, " +
+                "row_count = row_count - 1" +
+                where + "; " +
+                "DELETE FROM " + table + where + " AND row_count <= 0; ";
+    }
+
+    /**
+     * Statement filling a summary table from the whole transactions table
+     */
+    private static String summaryBackfillSQL(String table, String column) {
+        return summaryTotalsSQL(table, column, "");
+    }
+
+    /**
+     * Statement adding the transactions with IDs above a parameter to a
+     * summary table, one grouped upsert for a whole bulk insert batch
+     */
+    private static String summaryBatchAddSQL(String table, String column) {
+        String keyColumns = column == null ? "month, is_income" : "month, " + column + ", is_income";
+        return summaryTotalsSQL(table, column, "WHERE transaction_id > ? ") +
+                " ON CONFLICT (" + keyColumns + ") DO UPDATE SET " +
+                "total_cents = total_cents + excluded.total_cents, row_count = row_count + excluded.row_count";
+    }
+
+    private static String summaryTotalsSQL(String table, String column, String where) {
+        String keyColumns = column == null ? "month, is_income" : "month, " + column + ", is_income";
+        return "INSERT INTO " + table + " (" + keyColumns + ", total_cents, row_count) " +
+                summaryScanSQL(column, where);
+    }
+
+    /**
+     * Query computing the rows of a summary table from the transactions table
+     */
+    private static String summaryScanSQL(String column, String where) {
+        return "SELECT " + monthExpression("transaction_date") + ", " +
+                (column == null ? "" : "IFNULL(" + column + ", ''), ") +
+                "is_income, SUM(amount_cents), COUNT(*) FROM transactions " + where +
+                "GROUP BY " + (column == null ? "1, 2" : "1, 2, 3");
+    }
+
+    /**
+     * Starts telling a listener about every committed insert, update and delete
+     */
+    public void addTransactionListener(TransactionListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeTransactionListener(TransactionListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts sending a listener the change log entries of every write
+     * committed from now on
+     */
+    public void addChangeListener(ChangeListener listener) {
+        // Holding the writer, so no change can land between reading the position and listening
+        ConnectionPool.Lease lease = pool.writer();
+        try {
+            if (changeListeners.isEmpty()) {
+                publishedSeq = getLatestChangeSeq();
+            }
+            changeListeners.add(listener);
+        } finally {
+            lease.close();
+        }
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Sends the change log entries written since the last call to the change
+     * listeners. Nothing is read while there are no listeners. Called with
+     * the writer held.
+     */
+    private void publishChanges() {
+        if (changeListeners.isEmpty() || grouping) {
+            return;
+        }
+        List<ChangeEvent> changes = getChangesSince(publishedSeq, Integer.MAX_VALUE);
+        if (changes.isEmpty()) {
+            return;
+        }
+        publishedSeq = changes.get(changes.size() - 1).getSeq();
+        for (ChangeListener listener : changeListeners) {
+            listener.onChanges(changes);
+        }
+    }
+
+    /**
+     * Reads change log entries after a sequence number, for consumers
+     * catching up on changes they missed
+     *
+     * @param afterSeq Last sequence number already applied, or 0 for the whole log
+     * @param limit Maximum number of entries to return
+     * @return Entries in sequence order
+     */
+    public List<ChangeEvent> getChangesSince(long afterSeq, int limit) {
+        List<ChangeEvent> changes = new ArrayList<>();
+        String selectSQL = "SELECT * FROM change_log WHERE seq > ? ORDER BY seq LIMIT ?";
+
+        try (ConnectionPool.Lease lease = pool.reader();
+             PreparedStatement pstmt = lease.prepare(selectSQL)) {
+            pstmt.setLong(1, afterSeq);
+            pstmt.setInt(2, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    changes.add(mapChangeEvent(rs));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading change log: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return changes;
+    }
+
+    /**
+     * Sequence number of the newest change log entry
+     *
+     * @return The sequence number, 0 if the log is empty, or -1 if it could not be read
+     */
+    public long getLatestChangeSeq() {
+        try (ConnectionPool.Lease lease = pool.reader();
+             PreparedStatement pstmt = lease.prepare("SELECT IFNULL(MAX(seq), 0) FROM change_log");
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            System.err.println("Error reading change log: " + e.getMessage());
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Records how far a consumer has read the change log, so pruning keeps
+     * the entries it has not applied yet. Registers the consumer if needed.
+     *
+     * @param consumer Name identifying the consumer
+     * @param seq Last sequence number the consumer applied
+     * @return true if the position was saved
+     */
+    public boolean saveChangeLogPosition(String consumer, long seq) {
+        String upsertSQL = "INSERT INTO change_log_consumers (consumer, seq) VALUES (?, ?) " +
+                "ON CONFLICT (consumer) DO UPDATE SET seq = excluded.seq";
+
+        try (ConnectionPool.Lease lease = pool.writer();
+             PreparedStatement pstmt = lease.prepare(upsertSQL)) {
+            pstmt.setString(1, consumer);
+            pstmt.setLong(2, seq);
+            pstmt.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error saving change log position: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Stops keeping change log entries for a consumer
+     *
+     * @param consumer Name passed to saveChangeLogPosition
+     * @return true if the consumer was registered and has been removed
+     */
+    public boolean removeChangeLogConsumer(String consumer) {
+        try (ConnectionPool.Lease lease = pool.writer();
+             PreparedStatement pstmt = lease.prepare("DELETE FROM change_log_consumers WHERE consumer = ?")) {
+            pstmt.setString(1, consumer);
+            return pstmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            System.err.println("Error removing change log consumer: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Deletes change log entries older than a sequence number. Entries that a
+     * registered consumer or a change listener has not been sent yet are kept,
+     * so the low-water mark may stop the prune short of seq.
+     *
+     * @param seq First sequence number to keep
+     * @return The number of entries deleted, or -1 if the log could not be pruned
+     */
+    public int pruneChangesBefore(long seq) {
+        String pruneSQL = "DELETE FROM change_log WHERE seq < ? " +
+                "AND seq <= (SELECT IFNULL(MIN(seq), ?) FROM change_log_consumers)";
+
+        try (ConnectionPool.Lease lease = pool.writer();
+             PreparedStatement pstmt = lease.prepare(pruneSQL)) {
+            long limit = changeListeners.isEmpty() ? seq : Math.min(seq, publishedSeq + 1);
+            pstmt.setLong(1, limit);
+            pstmt.setLong(2, Long.MAX_VALUE);
+            int deleted = pstmt.executeUpdate();
+            if (deleted > 0) {
+                System.out.println(String.format("Pruned %,d change log entries.", deleted));
+            }
+            return deleted;
+        } catch (SQLException e) {
+            System.err.println("Error pruning change log: " + e.getMessage());
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
     /**
      * Adds a new transaction to the database
      *
-     * @param amount Transaction amount
+     * @param amountCents Transaction amount in cents
      * @param date Transaction date
      * @param category Category of the transaction
      * @param paymentMethod Method of payment
@@ -59,17 +500,17 @@ public class DatabaseManager {
      * @param recurring Whether this is a recurring transaction
      * @return The ID of the newly created transaction
      */
-    public int addTransaction(double amount, LocalDate date, String category,
+    public int addTransaction(long amountCents, LocalDate date, String category,
                               String paymentMethod, boolean isIncome, boolean recurring) {
 
-        String insertSQL = "INSERT INTO transactions (amount, transaction_date, category, " +
+        String insertSQL = "INSERT INTO transactions (amount_cents, transaction_date, category, " +
                 "payment_method, is_income, recurring) " +
                 "VALUES (?, ?, ?, ?, ?, ?)";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(insertSQL,
-                Statement.RETURN_GENERATED_KEYS)) {
+        try (ConnectionPool.Lease lease = pool.writer();
+             PreparedStatement pstmt = lease.prepare(insertSQL, Statement.RETURN_GENERATED_KEYS)) {
 
-            pstmt.setDouble(1, amount);
+            pstmt.setLong(1, amountCents);
             pstmt.setDate(2, Date.valueOf(date));
             pstmt.setString(3, category);
             pstmt.setString(4, paymentMethod);
@@ -84,7 +525,14 @@ public class DatabaseManager {
 
             try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
                 if (generatedKeys.next()) {
-                    return generatedKeys.getInt(1);
+                    int transactionId = generatedKeys.getInt(1);
+                    if (!listeners.isEmpty()) {
+                        Transaction added = new Transaction(transactionId, amountCents, date, category,
+                                paymentMethod, isIncome, recurring);
+                        notifyListeners(listener -> listener.onInsert(added));
+                    }
+                    publishChanges();
+                    return transactionId;
                 } else {
                     throw new SQLException("Creating transaction failed, no ID obtained.");
                 }
@@ -96,6 +544,276 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * Adds many transactions using JDBC batching with the default batch size
+     *
+     * @param transactions Transactions to insert (their IDs are ignored)
+     * @return The number of rows inserted
+     */
+    public int addTransactions(Iterable<Transaction> transactions) {
+        return addTransactions(transactions, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Adds many transactions using JDBC batching. Rows are committed every
+     * batchSize inserts instead of once per row, which is what makes large
+     * backfills fast. The per-row insert triggers are turned off for the
+     * batch: the summary tables are updated with one grouped statement per
+     * batch, and the change log gets a single BULK entry for the batch's
+     * range of IDs rather than a copy of every row.
+     *
+     * @param transactions Transactions to insert (their IDs are ignored)
+     * @param batchSize Number of rows per batch/commit
+     * @return The number of rows committed. If a batch fails it is rolled
+     *         back and the rows of the earlier batches are counted, so the
+     *         result is less than the number of transactions given.
+     */
+    public int addTransactions(Iterable<Transaction> transactions, int batchSize) {
+        return bulkInsert(transactions, batchSize).getRowsInserted();
+    }
+
+    /**
+     * Adds many transactions like addTransactions, and reports the rows
+     * committed along with the time taken, for callers that track ingest
+     * throughput
+     *
+     * @param transactions Transactions to insert (their IDs are ignored)
+     * @param batchSize Number of rows per batch/commit
+     * @return Report of the rows committed, which counts only the batches
+     *         before a failed one, and the elapsed time
+     */
+    public BulkInsertReport bulkInsert(Iterable<Transaction> transactions, int batchSize) {
+        long startTime = System.nanoTime();
+        try (ConnectionPool.Lease lease = pool.writer()) {
+            Connection connection = lease.getConnection();
+            if (batchSize <= 0) {
+                throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+            }
+
+            String insertSQL = "INSERT INTO transactions (amount_cents, transaction_date, category, " +
+                    "payment_method, is_income, recurring) " +
+                    "VALUES (?, ?, ?, ?, ?, ?)";
+
+            int inserted = 0;
+            int pending = 0;
+            boolean autoCommit = true;
+
+            // Rows of the current batch, passed to the listeners once committed
+            List<Transaction> uncommitted = !listeners.isEmpty() ? new ArrayList<>(batchSize) : null;
+
+            try {
+                autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+
+                try (PreparedStatement pstmt = lease.prepare(insertSQL)) {
+                    long lastIdBefore = 0;
+                    for (Transaction t : transactions) {
+                        if (pending == 0) {
+                            lastIdBefore = beginBulkBatch(lease);
+                        }
+                        pstmt.setLong(1, t.getAmountCents());
+                        pstmt.setDate(2, Date.valueOf(t.getDate()));
+                        pstmt.setString(3, t.getCategory());
+                        pstmt.setString(4, t.getPaymentMethod());
+                        pstmt.setBoolean(5, t.isIncome());
+                        pstmt.setBoolean(6, t.isRecurring());
+                        pstmt.addBatch();
+                        if (uncommitted != null) {
+                            uncommitted.add(t);
+                        }
+
+                        if (++pending == batchSize) {
+                            pstmt.executeBatch();
+                            endBulkBatch(lease, lastIdBefore);
+                            connection.commit();
+                            applyInserts(uncommitted);
+                            publishChanges();
+                            inserted += pending;
+                            pending = 0;
+                        }
+                    }
+
+                    if (pending > 0) {
+                        pstmt.executeBatch();
+                        endBulkBatch(lease, lastIdBefore);
+                        connection.commit();
+                        applyInserts(uncommitted);
+                        publishChanges();
+                        inserted += pending;
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Error adding transactions in bulk after " + inserted + " rows: " + e.getMessage());
+                e.printStackTrace();
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackError) {
+                    System.err.println("Error rolling back bulk insert: " + rollbackError.getMessage());
+                }
+            } finally {
+                try {
+                    connection.setAutoCommit(autoCommit);
+                } catch (SQLException e) {
+                    System.err.println("Error restoring auto-commit: " + e.getMessage());
+                }
+            }
+
+            return new BulkInsertReport(inserted, (System.nanoTime() - startTime) / 1_000_000);
+        }
+    }
+
+    /**
+     * Turns off the per-row insert triggers until endBulkBatch. The marker
+     * row is only ever visible inside the writer's open transaction.
+     *
+     * @return The highest transaction ID before the batch
+     */
+    private static long beginBulkBatch(ConnectionPool.Lease lease) throws SQLException {
+        try (PreparedStatement pstmt = lease.prepare("INSERT INTO bulk_insert (active) VALUES (1)")) {
+            pstmt.executeUpdate();
+        }
+        try (PreparedStatement pstmt = lease.prepare("SELECT IFNULL(MAX(transaction_id), 0) FROM transactions");
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Turns the insert triggers back on and does their work for the rows
+     * inserted since beginBulkBatch in a few set-based statements
+     */
+    private static void endBulkBatch(ConnectionPool.Lease lease, long lastIdBefore) throws SQLException {
+        try (PreparedStatement pstmt = lease.prepare("DELETE FROM bulk_insert")) {
+            pstmt.executeUpdate();
+        }
+        for (String[] summary : SUMMARY_TABLES) {
+            try (PreparedStatement pstmt = lease.prepare(summaryBatchAddSQL(summary[0], summary[1]))) {
+                pstmt.setLong(1, lastIdBefore);
+                pstmt.executeUpdate();
+            }
+        }
+        try (PreparedStatement pstmt = lease.prepare("INSERT INTO change_log " +
+                "(change_type, transaction_id, last_transaction_id) " +
+                "SELECT 'BULK', MIN(transaction_id), MAX(transaction_id) FROM transactions " +
+                "WHERE transaction_id > ?")) {
+            pstmt.setLong(1, lastIdBefore);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Passes a committed batch to the listeners and clears it
+     */
+    private void applyInserts(List<Transaction> committed) {
+        if (committed == null) {
+            return;
+        }
+        for (Transaction t : committed) {
+            notifyListeners(listener -> listener.onInsert(t));
+        }
+        committed.clear();
+    }
+
+    /**
+     * Passes a committed change to the transaction listeners, or holds it
+     * until the running write group commits
+     */
+    private void notifyListeners(Consumer<TransactionListener> event) {
+        if (grouping) {
+            pendingEvents.add(event);
+            return;
+        }
+        for (TransactionListener listener : listeners) {
+            event.accept(listener);
+        }
+    }
+
+    /**
+     * Runs several writes as one database transaction, so they share a
+     * single commit (and fsync) instead of paying one each. The writes keep
+     * reporting their own failures as usual; this returns false only when
+     * the group as a whole could not be committed, in which case none of it
+     * was kept. Transaction and change listeners hear about the writes once
+     * the group commits, and not at all if it rolls back.
+     * Bulk writes that commit in batches of their own should not be grouped.
+     *
+     * @param writes Calls to the write methods of this manager
+     * @return true if the group committed
+     */
+    public boolean runInTransaction(Runnable writes) {
+        try (ConnectionPool.Lease lease = pool.writer()) {
+            Connection connection = lease.getConnection();
+            boolean autoCommit;
+            try {
+                autoCommit = connection.getAutoCommit();
+            } catch (SQLException e) {
+                System.err.println("Error starting write group: " + e.getMessage());
+                return false;
+            }
+            // Already inside a group, which commits for us
+            if (!autoCommit) {
+                writes.run();
+                return true;
+            }
+
+            try {
+                connection.setAutoCommit(false);
+                grouping = true;
+                writes.run();
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                System.err.println("Error committing write group: " + e.getMessage());
+                e.printStackTrace();
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackError) {
+                    System.err.println("Error rolling back write group: " + rollbackError.getMessage());
+                }
+                // None of the held callbacks happened
+                pendingEvents.clear();
+                return false;
+            } finally {
+                grouping = false;
+                try {
+                    connection.setAutoCommit(true);
+                } catch (SQLException e) {
+                    System.err.println("Error restoring auto-commit: " + e.getMessage());
+                }
+            }
+
+            List<Consumer<TransactionListener>> committed = new ArrayList<>(pendingEvents);
+            pendingEvents.clear();
+            for (Consumer<TransactionListener> event : committed) {
+                notifyListeners(event);
+            }
+            publishChanges();
+            return true;
+        }
+    }
+
+    /**
+     * Retrieves a single transaction by ID
+     *
+     * @param transactionId ID of the transaction
+     * @return The transaction, or null if it does not exist
+     */
+    public Transaction getTransaction(int transactionId) {
+        String selectSQL = "SELECT * FROM transactions WHERE transaction_id = ?";
+
+        try (ConnectionPool.Lease lease = pool.reader();
+             PreparedStatement pstmt = lease.prepare(selectSQL)) {
+            pstmt.setInt(1, transactionId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapTransaction(rs) : null;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving transaction: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
     /**
      * Retrieves all transactions from the database
      *
@@ -105,20 +823,12 @@ public class DatabaseManager {
         List<Transaction> transactions = new ArrayList<>();
         String selectSQL = "SELECT * FROM transactions ORDER BY transaction_date DESC";
 
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(selectSQL)) {
+        try (ConnectionPool.Lease lease = pool.reader();
+             PreparedStatement pstmt = lease.prepare(selectSQL);
+             ResultSet rs = pstmt.executeQuery()) {
 
             while (rs.next()) {
-                Transaction transaction = new Transaction(
-                        rs.getInt("transaction_id"),
-                        rs.getDouble("amount"),
-                        rs.getDate("transaction_date").toLocalDate(),
-                        rs.getString("category"),
-                        rs.getString("payment_method"),
-                        rs.getBoolean("is_income"),
-                        rs.getBoolean("recurring")
-                );
-                transactions.add(transaction);
+                transactions.add(mapTransaction(rs));
             }
         } catch (SQLException e) {
             System.err.println("Error retrieving transactions: " + e.getMessage());
@@ -129,48 +839,558 @@ public class DatabaseManager {
     }
 
     /**
-     * Retrieves transactions filtered by date range
+     * Passes every transaction to a callback, one row at a time, without
+     * building a list. Rows are visited in transaction ID order.
      *
-     * @param startDate Beginning of date range
-     * @param endDate End of date range
-     * @return List of Transaction objects in the date range
+     * @param visitor Called once per transaction
+     * @return Number of transactions visited
      */
-    public List<Transaction> getTransactionsByDateRange(LocalDate startDate, LocalDate endDate) {
-        List<Transaction> transactions = new ArrayList<>();
-        String selectSQL = "SELECT * FROM transactions WHERE transaction_date BETWEEN ? AND ? " +
-                "ORDER BY transaction_date DESC";
+    public int forEachTransaction(Consumer<Transaction> visitor) {
+        String selectSQL = "SELECT * FROM transactions ORDER BY transaction_id";
+        int visited = 0;
 
-        try (PreparedStatement pstmt = connection.prepareStatement(selectSQL)) {
-            pstmt.setDate(1, Date.valueOf(startDate));
-            pstmt.setDate(2, Date.valueOf(endDate));
+        try (ConnectionPool.Lease lease = pool.reader();
+             PreparedStatement pstmt = lease.prepare(selectSQL);
+             ResultSet rs = pstmt.executeQuery()) {
 
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    Transaction transaction = new Transaction(
-                            rs.getInt("transaction_id"),
-                            rs.getDouble("amount"),
-                            rs.getDate("transaction_date").toLocalDate(),
-                            rs.getString("category"),
-                            rs.getString("payment_method"),
-                            rs.getBoolean("is_income"),
-                            rs.getBoolean("recurring")
-                    );
-                    transactions.add(transaction);
-                }
+            while (rs.next()) {
+                visitor.accept(mapTransaction(rs));
+                visited++;
             }
         } catch (SQLException e) {
-            System.err.println("Error retrieving transactions by date range: " + e.getMessage());
+            System.err.println("Error scanning transactions: " + e.getMessage());
             e.printStackTrace();
         }
 
-        return transactions;
+        return visited;
     }
 
     /**
-     * Updates an existing transaction
+     * Opens a cursor over the transactions in a date range, oldest first
+     * (by date, then ID). Rows are read from the database as the cursor
+     * advances, so any number of rows can be processed in constant memory.
+     * The caller must close the cursor.
+     *
+     * @param startDate Beginning of date range, or null for no lower bound
+     * @param endDate End of date range, or null for no upper bound
+     * @param fetchSize Rows the driver reads ahead per round trip
+     * @return An open cursor, or one that throws IllegalStateException when
+     *         read if the query failed
+     */
+    public TransactionCursor openCursor(LocalDate startDate, LocalDate endDate, int fetchSize) {
+        StringBuilder selectSQL = new StringBuilder("SELECT * FROM transactions WHERE 1 = 1");
+        if (startDate != null) {
+            selectSQL.append(" AND transaction_date >= ?");
+        }
+        if (endDate != null) {
+            selectSQL.append(" AND transaction_date <= ?");
+        }
+        selectSQL.append(" ORDER BY transaction_date, transaction_id");
+
+        ConnectionPool.Lease lease = pool.reader();
+        PreparedStatement pstmt = null;
+        try {
+            pstmt = lease.prepare(selectSQL.toString());
+            int index = 1;
+            if (startDate != null) {
+                pstmt.setDate(index++, Date.valueOf(startDate));
+            }
+            if (endDate != null) {
+                pstmt.setDate(index, Date.valueOf(endDate));
+            }
+            pstmt.setFetchSize(fetchSize);
+            return new TransactionCursor(pstmt, this::mapTransaction, lease);
+        } catch (SQLException e) {
+            System.err.println("Error opening transaction cursor: " + e.getMessage());
+            e.printStackTrace();
+            if (pstmt != null) {
+                try {
+                    pstmt.close();
+                } catch (SQLException closeError) {
+                    System.err.println("Error closing statement: " + closeError.getMessage());
+                }
+            }
+            lease.close();
+            return TransactionCursor.failed(e);
+        }
+    }
+
+    /**
+     * Streams the transactions in a date range, oldest first. Close the
+     * stream (try-with-resources) to release the underlying statement.
+     *
+     * @param startDate Beginning of date range, or null for no lower bound
+     * @param endDate End of date range, or null for no upper bound
+     * @return Stream of transactions backed by an open cursor
+     */
+    public Stream<Transaction> streamTransactions(LocalDate startDate, LocalDate endDate) {
+        return openCursor(startDate, endDate, DEFAULT_FETCH_SIZE).stream();
+    }
+
+    /**
+     * Retrieves the page of transactions that follows a given row in the
+     * order used by getTransactionsPage (newest first). Unlike an OFFSET
+     * query this seeks straight to the position via the date index, so
+     * reading deep pages costs the same as reading the first.
+     *
+     * @param afterDate Date of the last row already read, or null for the first page
+     * @param afterId ID of the last row already read (ignored when afterDate is null)
+     * @param limit Maximum number of rows to return
+     * @return List of Transaction objects following the given row
+     */
+    public List<Transaction> getTransactionsAfter(LocalDate afterDate, int afterId, int limit) {
+        return searchTransactionsAfter(new TransactionQuery(), afterDate, afterId, limit);
+    }
+
+    /**
+     * Retrieves transactions filtered by date range
+     *
+     * @param startDate Beginning of date range
+     * @param endDate End of date range
+     * @return List of Transaction objects in the date range
+     */
+    public List<Transaction> getTransactionsByDateRange(LocalDate startDate, LocalDate endDate) {
+        List<Transaction> transactions = new ArrayList<>();
+        String selectSQL = "SELECT * FROM transactions WHERE transaction_date BETWEEN ? AND ? " +
+                "ORDER BY transaction_date DESC";
+
+        try (ConnectionPool.Lease lease = pool.reader();
+             PreparedStatement pstmt = lease.prepare(selectSQL)) {
+            pstmt.setDate(1, Date.valueOf(startDate));
+            pstmt.setDate(2, Date.valueOf(endDate));
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    transactions.add(mapTransaction(rs));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving transactions by date range: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return transactions;
+    }
+
+    /**
+     * Counts the transactions in the database
+     *
+     * @return Number of rows in the transactions table
+     */
+    public int getTransactionCount() {
+        String countSQL = "SELECT COUNT(*) FROM transactions";
+
+        try (ConnectionPool.Lease lease = pool.reader();
+             PreparedStatement pstmt = lease.prepare(countSQL);
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            System.err.println("Error counting transactions: " + e.getMessage());
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    /**
+     * Retrieves one page of transactions in the same order as getAllTransactions
+     *
+     * @param offset Number of rows to skip
+     * @param limit Maximum number of rows to return
+     * @return List of Transaction objects on the requested page
+     */
+    public List<Transaction> getTransactionsPage(int offset, int limit) {
+        return searchTransactions(new TransactionQuery(), offset, limit);
+    }
+
+    /**
+     * Retrieves one page of the transactions matching a query, newest first
+     *
+     * @param query Search criteria
+     * @param offset Number of matching rows to skip
+     * @param limit Maximum number of rows to return
+     * @return List of matching Transaction objects on the requested page
+     */
+    public List<Transaction> searchTransactions(TransactionQuery query, int offset, int limit) {
+        StringBuilder selectSQL = new StringBuilder("SELECT * FROM transactions WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        query.appendConditions(selectSQL, params);
+        selectSQL.append(" ORDER BY transaction_date DESC, transaction_id DESC LIMIT ? OFFSET ?");
+        params.add(limit);
+        params.add(offset);
+        return queryTransactions(selectSQL.toString(), params, limit);
+    }
+
+    /**
+     * Retrieves the page of transactions matching a query that follows a
+     * given row, newest first (see getTransactionsAfter)
+     *
+     * @param query Search criteria
+     * @param afterDate Date of the last row already read, or null for the first page
+     * @param afterId ID of the last row already read (ignored when afterDate is null)
+     * @param limit Maximum number of rows to return
+     * @return List of matching Transaction objects following the given row
+     */
+    public List<Transaction> searchTransactionsAfter(TransactionQuery query, LocalDate afterDate, int afterId,
+                                                     int limit) {
+        StringBuilder selectSQL = new StringBuilder("SELECT * FROM transactions WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        if (afterDate != null) {
+            selectSQL.append(" AND (transaction_date, transaction_id) < (?, ?)");
+            params.add(Date.valueOf(afterDate));
+            params.add(afterId);
+        }
+        query.appendConditions(selectSQL, params);
+        selectSQL.append(" ORDER BY transaction_date DESC, transaction_id DESC LIMIT ?");
+        params.add(limit);
+        return queryTransactions(selectSQL.toString(), params, limit);
+    }
+
+    /**
+     * Counts the transactions matching a query. Queries the monthly summary
+     * tables can answer are counted from them instead of the transactions.
+     *
+     * @param query Search criteria
+     * @return Number of matching transactions
+     */
+    public int countTransactions(TransactionQuery query) {
+        int total = 0;
+        for (int count : countBy(query, TransactionQuery.TYPE).values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Counts the matches of a query per category, payment method and type.
+     * Each facet is counted with the other criteria applied but not its own,
+     * so the counts show what selecting another value would return.
+     *
+     * @param query Search criteria
+     * @return Total matches and the counts per facet value
+     */
+    public TransactionQuery.FacetCounts getFacetCounts(TransactionQuery query) {
+        return new TransactionQuery.FacetCounts(
+                countTransactions(query),
+                countBy(query.without(TransactionQuery.CATEGORY), TransactionQuery.CATEGORY),
+                countBy(query.without(TransactionQuery.PAYMENT_METHOD), TransactionQuery.PAYMENT_METHOD),
+                countBy(query.without(TransactionQuery.TYPE), TransactionQuery.TYPE));
+    }
+
+    /**
+     * Counts rows matching a filter grouped by a facet column, reading a
+     * monthly summary table when one holds both the grouping and every
+     * criterion in the filter
+     */
+    private Map<String, Integer> countBy(TransactionQuery filter, String groupColumn) {
+        String table = summaryTableFor(filter, groupColumn);
+        StringBuilder selectSQL = new StringBuilder("SELECT " + groupColumn + " AS group_key, ");
+        List<Object> params = new ArrayList<>();
+
+        if (table != null) {
+            selectSQL.append("SUM(row_count) AS row_count FROM ").append(table).append(" WHERE 1 = 1");
+            if (filter.getStartDate() != null) {
+                selectSQL.append(" AND month >= ?");
+                params.add(YearMonth.from(filter.getStartDate()).toString());
+            }
+            if (filter.getEndDate() != null) {
+                selectSQL.append(" AND month <= ?");
+                params.add(YearMonth.from(filter.getEndDate()).toString());
+            }
+            if (filter.getIncome() != null) {
+                selectSQL.append(" AND is_income = ?");
+                params.add(filter.getIncome());
+            }
+            if (table.equals("monthly_category_totals")) {
+                TransactionQuery.appendIn(selectSQL, params, TransactionQuery.CATEGORY, filter.getCategories());
+            } else if (table.equals("monthly_payment_totals")) {
+                TransactionQuery.appendIn(selectSQL, params, TransactionQuery.PAYMENT_METHOD,
+                        filter.getPaymentMethods());
+            }
+        } else {
+            selectSQL.append("COUNT(*) AS row_count FROM transactions WHERE 1 = 1");
+            filter.appendConditions(selectSQL, params);
+        }
+        selectSQL.append(" GROUP BY group_key ORDER BY group_key");
+
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        try (ConnectionPool.Lease lease = pool.reader();
+             PreparedStatement pstmt = lease.prepare(selectSQL.toString())) {
+            bind(pstmt, params);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    String key;
+                    if (groupColumn.equals(TransactionQuery.TYPE)) {
+                        key = rs.getBoolean("group_key") ? "Income" : "Expense";
+                    } else {
+                        // Missing values come back as NULL from the transactions table and '' from the summaries
+                        key = rs.getString("group_key");
+                        key = key == null || key.isEmpty() ? null : key;
+                    }
+                    counts.merge(key, rs.getInt("row_count"), Integer::sum);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error counting transactions by " + groupColumn + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return counts;
+    }
+
+    /**
+     * Picks the summary table that can count a filter grouped by a column,
+     * or null if the transactions table has to be scanned
+     */
+    private static String summaryTableFor(TransactionQuery filter, String groupColumn) {
+        if (!filter.isSummarizable()) {
+            return null;
+        }
+        boolean byCategory = !filter.getCategories().isEmpty();
+        boolean byPaymentMethod = !filter.getPaymentMethods().isEmpty();
+
+        switch (groupColumn) {
+            case TransactionQuery.CATEGORY:
+                return byPaymentMethod ? null : "monthly_category_totals";
+            case TransactionQuery.PAYMENT_METHOD:
+                return byCategory ? null : "monthly_payment_totals";
+            default:
+                if (byCategory && byPaymentMethod) {
+                    return null;
+                }
+                return byCategory ? "monthly_category_totals"
+                        : byPaymentMethod ? "monthly_payment_totals" : "monthly_type_totals";
+        }
+    }
+
+    /**
+     * Runs a SELECT over the transactions table and maps every row
+     */
+    private List<Transaction> queryTransactions(String selectSQL, List<Object> params, int expectedRows) {
+        List<Transaction> transactions = new ArrayList<>(expectedRows);
+
+        try (ConnectionPool.Lease lease = pool.reader();
+             PreparedStatement pstmt = lease.prepare(selectSQL)) {
+            bind(pstmt, params);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    transactions.add(mapTransaction(rs));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving transactions: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return transactions;
+    }
+
+    private static void bind(PreparedStatement pstmt, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            pstmt.setObject(i + 1, params.get(i));
+        }
+    }
+
+    /**
+     * Totals transaction amounts per category with a GROUP BY query
+     *
+     * @param startDate Beginning of date range, or null for no lower bound
+     * @param endDate End of date range, or null for no upper bound
+     * @param isIncome true for income, false for expenses, null for both
+     * @return Map of category to total in cents, ordered by category
+     */
+    public Map<String, Long> getCategoryTotals(LocalDate startDate, LocalDate endDate, Boolean isIncome) {
+        if (coversWholeMonths(startDate, endDate)) {
+            return getSummaryTotals("monthly_category_totals", "category", startDate, endDate, isIncome);
+        }
+        return getTotals("category", startDate, endDate, isIncome);
+    }
+
+    /**
+     * Totals transaction amounts per payment method with a GROUP BY query
+     *
+     * @param startDate Beginning of date range, or null for no lower bound
+     * @param endDate End of date range, or null for no upper bound
+     * @param isIncome true for income, false for expenses, null for both
+     * @return Map of payment method to total in cents, ordered by payment method
+     */
+    public Map<String, Long> getPaymentMethodTotals(LocalDate startDate, LocalDate endDate, Boolean isIncome) {
+        if (coversWholeMonths(startDate, endDate)) {
+            return getSummaryTotals("monthly_payment_totals", "payment_method", startDate, endDate, isIncome);
+        }
+        return getTotals("payment_method", startDate, endDate, isIncome);
+    }
+
+    /**
+     * Totals transaction amounts per month with a GROUP BY query
+     *
+     * @param startDate Beginning of date range, or null for no lower bound
+     * @param endDate End of date range, or null for no upper bound
+     * @param isIncome true for income, false for expenses, null for both
+     * @return Map of month (yyyy-MM) to total in cents, ordered by month
+     */
+    public Map<String, Long> getMonthlyTotals(LocalDate startDate, LocalDate endDate, Boolean isIncome) {
+        if (coversWholeMonths(startDate, endDate)) {
+            return getSummaryTotals("monthly_type_totals", "month", startDate, endDate, isIncome);
+        }
+        return getTotals(monthExpression("transaction_date"), startDate, endDate, isIncome);
+    }
+
+    /**
+     * Totals transaction amounts per day with a GROUP BY query, for charts
+     * that need finer detail than the monthly summaries
+     *
+     * @param isIncome Whether to total income (true) or expenses (false)
+     * @return Map of day to total in cents, ordered by day
+     */
+    public Map<LocalDate, Long> getDailyTotals(boolean isIncome) {
+        Map<LocalDate, Long> totals = new TreeMap<>();
+        String selectSQL = "SELECT transaction_date, SUM(amount_cents) AS total FROM transactions " +
+                "WHERE is_income = ? GROUP BY transaction_date";
+
+        try (ConnectionPool.Lease lease = pool.reader();
+             PreparedStatement pstmt = lease.prepare(selectSQL)) {
+            pstmt.setBoolean(1, isIncome);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    // Merged, since a day may be stored both as text and as a timestamp
+                    totals.merge(rs.getDate("transaction_date").toLocalDate(), rs.getLong("total"), Long::sum);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading daily totals: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return totals;
+    }
+
+    /**
+     * Totals per category read straight from the transactions table, never
+     * from the summary tables, for checking the derived totals against
+     */
+    Map<String, Long> scanCategoryTotals(boolean isIncome) {
+        return getTotals("category", null, null, isIncome);
+    }
+
+    /**
+     * Totals per payment method read straight from the transactions table
+     */
+    Map<String, Long> scanPaymentMethodTotals(boolean isIncome) {
+        return getTotals("payment_method", null, null, isIncome);
+    }
+
+    /**
+     * Totals per month read straight from the transactions table
+     */
+    Map<String, Long> scanMonthlyTotals(boolean isIncome) {
+        return getTotals(monthExpression("transaction_date"), null, null, isIncome);
+    }
+
+    /**
+     * Whether a date range lines up with month boundaries, so the monthly
+     * summary tables can answer it exactly
+     */
+    private static boolean coversWholeMonths(LocalDate startDate, LocalDate endDate) {
+        return (startDate == null || startDate.getDayOfMonth() == 1)
+                && (endDate == null || endDate.getDayOfMonth() == endDate.lengthOfMonth());
+    }
+
+    /**
+     * Sums a monthly summary table by one of its key columns. Only a few
+     * rows per month are read regardless of how many transactions exist.
+     */
+    private Map<String, Long> getSummaryTotals(String table, String groupColumn, LocalDate startDate,
+                                                 LocalDate endDate, Boolean isIncome) {
+        Map<String, Long> totals = new LinkedHashMap<>();
+        StringBuilder selectSQL = new StringBuilder("SELECT " + groupColumn + " AS group_key, " +
+                "SUM(total_cents) AS total FROM " + table + " WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+
+        if (startDate != null) {
+            selectSQL.append(" AND month >= ?");
+            params.add(YearMonth.from(startDate).toString());
+        }
+        if (endDate != null) {
+            selectSQL.append(" AND month <= ?");
+            params.add(YearMonth.from(endDate).toString());
+        }
+        if (isIncome != null) {
+            selectSQL.append(" AND is_income = ?");
+            params.add(isIncome);
+        }
+        selectSQL.append(" GROUP BY group_key ORDER BY group_key");
+
+        try (ConnectionPool.Lease lease = pool.reader();
+             PreparedStatement pstmt = lease.prepare(selectSQL.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    // Missing categories/payment methods are stored as '' in the summaries
+                    String key = rs.getString("group_key");
+                    totals.put(key.isEmpty() ? null : key, rs.getLong("total"));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading summary table " + table + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return totals;
+    }
+
+    /**
+     * Runs SUM(amount_cents) grouped by the given column or expression, applying
+     * whichever of the optional filters are set
+     */
+    private Map<String, Long> getTotals(String groupExpression, LocalDate startDate, LocalDate endDate,
+                                          Boolean isIncome) {
+        Map<String, Long> totals = new LinkedHashMap<>();
+        StringBuilder selectSQL = new StringBuilder("SELECT " + groupExpression + " AS group_key, " +
+                "SUM(amount_cents) AS total FROM transactions WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+
+        if (startDate != null) {
+            selectSQL.append(" AND transaction_date >= ?");
+            params.add(Date.valueOf(startDate));
+        }
+        if (endDate != null) {
+            selectSQL.append(" AND transaction_date <= ?");
+            params.add(Date.valueOf(endDate));
+        }
+        if (isIncome != null) {
+            selectSQL.append(" AND is_income = ?");
+            params.add(isIncome);
+        }
+        selectSQL.append(" GROUP BY group_key ORDER BY group_key");
+
+        try (ConnectionPool.Lease lease = pool.reader();
+             PreparedStatement pstmt = lease.prepare(selectSQL.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    totals.put(rs.getString("group_key"), rs.getLong("total"));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error aggregating transactions: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return totals;
+    }
+
+    /**
+     * Updates an existing transaction
      *
      * @param transactionId ID of the transaction to update
-     * @param amount Updated amount
+     * @param amountCents Updated amount in cents
      * @param date Updated date
      * @param category Updated category
      * @param paymentMethod Updated payment method
@@ -178,17 +1398,21 @@ public class DatabaseManager {
      * @param recurring Updated recurring status
      * @return true if update was successful, false otherwise
      */
-    public boolean updateTransaction(int transactionId, double amount, LocalDate date,
+    public boolean updateTransaction(int transactionId, long amountCents, LocalDate date,
                                      String category, String paymentMethod,
                                      boolean isIncome, boolean recurring) {
 
-        String updateSQL = "UPDATE transactions SET amount = ?, transaction_date = ?, " +
+        String updateSQL = "UPDATE transactions SET amount_cents = ?, transaction_date = ?, " +
                 "category = ?, payment_method = ?, " +
                 "is_income = ?, recurring = ? " +
                 "WHERE transaction_id = ?";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(updateSQL)) {
-            pstmt.setDouble(1, amount);
+        try (ConnectionPool.Lease lease = pool.writer();
+             PreparedStatement pstmt = lease.prepare(updateSQL)) {
+            // The old values are needed to move the amount between cached groups
+            Transaction before = !listeners.isEmpty() ? getTransaction(transactionId) : null;
+
+            pstmt.setLong(1, amountCents);
             pstmt.setDate(2, Date.valueOf(date));
             pstmt.setString(3, category);
             pstmt.setString(4, paymentMethod);
@@ -197,6 +1421,12 @@ public class DatabaseManager {
             pstmt.setInt(7, transactionId);
 
             int rowsAffected = pstmt.executeUpdate();
+            if (rowsAffected > 0 && before != null) {
+                Transaction after = new Transaction(transactionId, amountCents, date, category,
+                        paymentMethod, isIncome, recurring);
+                notifyListeners(listener -> listener.onUpdate(before, after));
+            }
+            publishChanges();
             return rowsAffected > 0;
         } catch (SQLException e) {
             System.err.println("Error updating transaction: " + e.getMessage());
@@ -214,10 +1444,16 @@ public class DatabaseManager {
     public boolean deleteTransaction(int transactionId) {
         String deleteSQL = "DELETE FROM transactions WHERE transaction_id = ?";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(deleteSQL)) {
+        try (ConnectionPool.Lease lease = pool.writer();
+             PreparedStatement pstmt = lease.prepare(deleteSQL)) {
+            Transaction before = !listeners.isEmpty() ? getTransaction(transactionId) : null;
             pstmt.setInt(1, transactionId);
 
             int rowsAffected = pstmt.executeUpdate();
+            if (rowsAffected > 0 && before != null) {
+                notifyListeners(listener -> listener.onDelete(before));
+            }
+            publishChanges();
             return rowsAffected > 0;
         } catch (SQLException e) {
             System.err.println("Error deleting transaction: " + e.getMessage());
@@ -227,17 +1463,617 @@ public class DatabaseManager {
     }
 
     /**
-     * Close the database connection
+     * Saves a recurrence rule. No transactions are generated until the
+     * scheduler next runs.
+     *
+     * @param rule Rule to save; its ID is ignored
+     * @return The ID of the new rule, or -1 if it could not be saved
      */
-    public void closeConnection() {
+    public int addRecurrenceRule(RecurrenceRule rule) {
+        String insertSQL = "INSERT INTO recurrence_rules (amount_cents, category, payment_method, is_income, " +
+                "frequency, interval_count, start_date, end_date, occurrences, next_date) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        try (ConnectionPool.Lease lease = pool.writer();
+             PreparedStatement pstmt = lease.prepare(insertSQL, Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setLong(1, rule.getAmountCents());
+            pstmt.setString(2, rule.getCategory());
+            pstmt.setString(3, rule.getPaymentMethod());
+            pstmt.setBoolean(4, rule.isIncome());
+            pstmt.setString(5, rule.getFrequency().name());
+            pstmt.setInt(6, rule.getInterval());
+            pstmt.setDate(7, Date.valueOf(rule.getStartDate()));
+            pstmt.setDate(8, rule.getEndDate() == null ? null : Date.valueOf(rule.getEndDate()));
+            pstmt.setInt(9, rule.getOccurrences());
+            pstmt.setDate(10, rule.getNextDate() == null ? null : Date.valueOf(rule.getNextDate()));
+            pstmt.executeUpdate();
+
+            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    return generatedKeys.getInt(1);
+                }
+                throw new SQLException("Creating recurrence rule failed, no ID obtained.");
+            }
+        } catch (SQLException e) {
+            System.err.println("Error adding recurrence rule: " + e.getMessage());
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Retrieves every recurrence rule, including ones that have ended
+     *
+     * @return List of rules in the order they were created
+     */
+    public List<RecurrenceRule> getRecurrenceRules() {
+        List<RecurrenceRule> rules = new ArrayList<>();
+        String selectSQL = "SELECT * FROM recurrence_rules ORDER BY rule_id";
+
+        try (ConnectionPool.Lease lease = pool.reader();
+             PreparedStatement pstmt = lease.prepare(selectSQL);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                rules.add(mapRecurrenceRule(rs));
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving recurrence rules: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return rules;
+    }
+
+    /**
+     * Deletes a recurrence rule. Transactions it already generated are kept.
+     *
+     * @param ruleId ID of the rule to delete
+     * @return true if deletion was successful, false otherwise
+     */
+    public boolean deleteRecurrenceRule(int ruleId) {
+        try (ConnectionPool.Lease lease = pool.writer();
+             PreparedStatement pstmt = lease.prepare("DELETE FROM recurrence_rules WHERE rule_id = ?")) {
+            pstmt.setInt(1, ruleId);
+            return pstmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            System.err.println("Error deleting recurrence rule: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Turns due occurrences of the recurrence rules into transactions. The
+     * new rows and each rule's progress are committed together, so missed
+     * periods are caught up exactly once no matter how often this runs.
+     *
+     * @param asOf Occurrences dated on or before this day are due
+     * @param limit Most transactions to generate in one call; call again
+     *              while the result equals the limit to finish a long catch-up
+     * @return Number of transactions generated, or -1 if the batch failed
+     */
+    public int materializeRecurringTransactions(LocalDate asOf, int limit) {
+        try (ConnectionPool.Lease lease = pool.writer()) {
+            Connection connection = lease.getConnection();
+            if (limit <= 0) {
+                throw new IllegalArgumentException("Limit must be positive: " + limit);
+            }
+
+            String dueSQL = "SELECT * FROM recurrence_rules WHERE next_date IS NOT NULL AND next_date <= ? " +
+                    "ORDER BY next_date, rule_id";
+            String insertSQL = "INSERT INTO transactions (amount_cents, transaction_date, category, " +
+                    "payment_method, is_income, recurring) " +
+                    "VALUES (?, ?, ?, ?, ?, ?)";
+            // Matching the old count makes a concurrent change roll the batch back instead of doubling it
+            String advanceSQL = "UPDATE recurrence_rules SET occurrences = ?, next_date = ? " +
+                    "WHERE rule_id = ? AND occurrences = ?";
+
+            List<Transaction> generated = new ArrayList<>();
+            List<RecurrenceRule> due = new ArrayList<>();
+            List<RecurrenceRule> advanced = new ArrayList<>();
+            boolean autoCommit = true;
+
+            try {
+                autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+
+                try (PreparedStatement pstmt = lease.prepare(dueSQL)) {
+                    pstmt.setDate(1, Date.valueOf(asOf));
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (generated.size() < limit && rs.next()) {
+                            RecurrenceRule rule = mapRecurrenceRule(rs);
+                            due.add(rule);
+                            LocalDate next = rule.getNextDate();
+                            while (next != null && !next.isAfter(asOf) && generated.size() < limit) {
+                                generated.add(rule.toTransaction(next));
+                                rule = rule.withOccurrences(rule.getOccurrences() + 1);
+                                next = rule.getNextDate();
+                            }
+                            advanced.add(rule);
+                        }
+                    }
+                }
+
+                if (!generated.isEmpty()) {
+                    try (PreparedStatement pstmt = lease.prepare(insertSQL)) {
+                        for (Transaction t : generated) {
+                            pstmt.setLong(1, t.getAmountCents());
+                            pstmt.setDate(2, Date.valueOf(t.getDate()));
+                            pstmt.setString(3, t.getCategory());
+                            pstmt.setString(4, t.getPaymentMethod());
+                            pstmt.setBoolean(5, t.isIncome());
+                            pstmt.setBoolean(6, true);
+                            pstmt.addBatch();
+                        }
+                        pstmt.executeBatch();
+                    }
+
+                    try (PreparedStatement pstmt = lease.prepare(advanceSQL)) {
+                        for (int i = 0; i < advanced.size(); i++) {
+                            RecurrenceRule rule = advanced.get(i);
+                            pstmt.setInt(1, rule.getOccurrences());
+                            pstmt.setDate(2, rule.getNextDate() == null ? null : Date.valueOf(rule.getNextDate()));
+                            pstmt.setInt(3, rule.getId());
+                            pstmt.setInt(4, due.get(i).getOccurrences());
+                            pstmt.addBatch();
+                        }
+                        for (int updated : pstmt.executeBatch()) {
+                            if (updated != 1) {
+                                throw new SQLException("A recurrence rule changed while its occurrences were generated.");
+                            }
+                        }
+                    }
+                }
+
+                connection.commit();
+            } catch (SQLException e) {
+                System.err.println("Error generating recurring transactions: " + e.getMessage());
+                e.printStackTrace();
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackError) {
+                    System.err.println("Error rolling back recurring transactions: " + rollbackError.getMessage());
+                }
+                return -1;
+            } finally {
+                try {
+                    connection.setAutoCommit(autoCommit);
+                } catch (SQLException e) {
+                    System.err.println("Error restoring auto-commit: " + e.getMessage());
+                }
+            }
+
+            int count = generated.size();
+            applyInserts(generated);
+            publishChanges();
+            return count;
+        }
+    }
+
+    /**
+     * Saves a budget, replacing any budget for the same category and period
+     *
+     * @param budget Budget to save
+     * @return true if the budget was saved, false otherwise
+     */
+    public boolean setBudget(Budget budget) {
+        String upsertSQL = "INSERT OR REPLACE INTO budgets (category, period, limit_cents) VALUES (?, ?, ?)";
+
+        try (ConnectionPool.Lease lease = pool.writer();
+             PreparedStatement pstmt = lease.prepare(upsertSQL)) {
+            pstmt.setString(1, budget.getCategory());
+            pstmt.setString(2, budgetPeriod(budget.getMonth()));
+            pstmt.setLong(3, budget.getLimitCents());
+            pstmt.executeUpdate();
+            if (budgetTracker != null) {
+                budgetTracker.putBudget(budget);
+            }
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error saving budget: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Deletes a budget
+     *
+     * @param category Category of the budget
+     * @param month Month of the budget, or null for the every-month budget
+     * @return true if deletion was successful, false otherwise
+     */
+    public boolean deleteBudget(String category, YearMonth month) {
+        try (ConnectionPool.Lease lease = pool.writer();
+             PreparedStatement pstmt = lease.prepare(
+                "DELETE FROM budgets WHERE category = ? AND period = ?")) {
+            pstmt.setString(1, category);
+            pstmt.setString(2, budgetPeriod(month));
+            boolean deleted = pstmt.executeUpdate() > 0;
+            if (deleted && budgetTracker != null) {
+                budgetTracker.removeBudget(category, month);
+            }
+            return deleted;
+        } catch (SQLException e) {
+            System.err.println("Error deleting budget: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Retrieves every saved budget
+     *
+     * @return List of budgets ordered by category
+     */
+    public List<Budget> getBudgets() {
+        List<Budget> budgets = new ArrayList<>();
+        String selectSQL = "SELECT * FROM budgets ORDER BY category, period";
+
+        try (ConnectionPool.Lease lease = pool.reader();
+             PreparedStatement pstmt = lease.prepare(selectSQL);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                String period = rs.getString("period");
+                budgets.add(new Budget(rs.getString("category"),
+                        period.equals(EVERY_MONTH) ? null : YearMonth.parse(period),
+                        rs.getLong("limit_cents")));
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving budgets: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return budgets;
+    }
+
+    private static String budgetPeriod(YearMonth month) {
+        return month == null ? EVERY_MONTH : month.toString();
+    }
+
+    /**
+     * Totals per month and category, read from the monthly category summary
+     * table. Rows without a category are left out.
+     *
+     * @param isIncome Whether to total income (true) or expenses (false)
+     * @return Map of month to a map of category to total in cents
+     */
+    public Map<YearMonth, Map<String, Long>> getMonthlyCategoryTotals(boolean isIncome) {
+        Map<YearMonth, Map<String, Long>> totals = new LinkedHashMap<>();
+        String selectSQL = "SELECT month, category, total_cents FROM monthly_category_totals " +
+                "WHERE is_income = ? AND category <> '' ORDER BY month, category";
+
+        try (ConnectionPool.Lease lease = pool.reader();
+             PreparedStatement pstmt = lease.prepare(selectSQL)) {
+            pstmt.setBoolean(1, isIncome);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    totals.computeIfAbsent(YearMonth.parse(rs.getString("month")), m -> new LinkedHashMap<>())
+                            .put(rs.getString("category"), rs.getLong("total_cents"));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading monthly category totals: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return totals;
+    }
+
+    /**
+     * Returns the in-memory chart totals, building them from the database
+     * the first time they are requested
+     *
+     * @return The aggregate cache kept in sync with this database
+     */
+    public AggregateCache getAggregateCache() {
+        if (aggregateCache == null) {
+            // Built holding the writer, so no write lands between loading the totals and listening
+            ConnectionPool.Lease lease = pool.writer();
+            try {
+                if (aggregateCache == null) {
+                    long startTime = System.nanoTime();
+                    AggregateCache cache = new AggregateCache();
+                    cache.rebuild(this);
+                    listeners.add(cache);
+                    aggregateCache = cache;
+                    System.out.println(String.format("Aggregate cache built in %d ms.",
+                            (System.nanoTime() - startTime) / 1_000_000));
+                }
+            } finally {
+                lease.close();
+            }
+        }
+        return aggregateCache;
+    }
+
+    /**
+     * Returns the budget tracker, loading budgets and spending totals from
+     * the database the first time it is requested. From then on it is told
+     * about every write.
+     *
+     * @return The budget tracker kept in sync with this database
+     */
+    public BudgetTracker getBudgetTracker() {
+        if (budgetTracker == null) {
+            ConnectionPool.Lease lease = pool.writer();
+            try {
+                if (budgetTracker == null) {
+                    BudgetTracker tracker = new BudgetTracker();
+                    tracker.rebuild(this);
+                    listeners.add(tracker);
+                    budgetTracker = tracker;
+                }
+            } finally {
+                lease.close();
+            }
+        }
+        return budgetTracker;
+    }
+
+    /**
+     * Checks the summary tables and the aggregate cache against the
+     * transactions table, rebuilding whichever of them differ
+     *
+     * @return true if both were consistent with the transactions table
+     */
+    public boolean verifyAggregateCache() {
+        AggregateCache cache = getAggregateCache();
+        // Holding the writer, so a concurrent write cannot look like a mismatch
+        ConnectionPool.Lease lease = pool.writer();
         try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                System.out.println("Database connection closed.");
+            boolean summariesConsistent = verifySummaryTables(lease);
+            if (!summariesConsistent && budgetTracker != null) {
+                // Its spending totals are read from the summary tables
+                budgetTracker.rebuild(this);
+            }
+            return cache.verify(this) & summariesConsistent;
+        } finally {
+            lease.close();
+        }
+    }
+
+    /**
+     * Compares every row of the summary tables with the same totals computed
+     * from the transactions table, rebuilding the tables if any differ
+     *
+     * @return true if the summary tables matched
+     */
+    private boolean verifySummaryTables(ConnectionPool.Lease lease) {
+        boolean consistent = true;
+        try (Statement statement = lease.getConnection().createStatement()) {
+            for (String[] summary : SUMMARY_TABLES) {
+                String table = summary[0];
+                String column = summary[1];
+                String keyColumns = column == null ? "month, is_income" : "month, " + column + ", is_income";
+                String stored = "SELECT " + keyColumns + ", total_cents, row_count FROM " + table;
+                String scanned = summaryScanSQL(column, "");
+
+                try (ResultSet rs = statement.executeQuery("SELECT " +
+                        "(SELECT COUNT(*) FROM (" + stored + " EXCEPT " + scanned + ")) + " +
+                        "(SELECT COUNT(*) FROM (" + scanned + " EXCEPT " + stored + "))")) {
+                    int mismatches = rs.next() ? rs.getInt(1) : 0;
+                    if (mismatches > 0) {
+                        System.out.println("Summary table " + table + " differs from the transactions in " +
+                                mismatches + " rows.");
+                        consistent = false;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error checking summary tables: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        if (!consistent) {
+            rebuildSummaryTables();
+        }
+        return consistent;
+    }
+
+    /**
+     * Builds a Transaction from the current row of a result set
+     */
+    private Transaction mapTransaction(ResultSet rs) throws SQLException {
+        return new Transaction(
+                rs.getInt("transaction_id"),
+                rs.getLong("amount_cents"),
+                rs.getDate("transaction_date").toLocalDate(),
+                rs.getString("category"),
+                rs.getString("payment_method"),
+                rs.getBoolean("is_income"),
+                rs.getBoolean("recurring")
+        );
+    }
+
+    /**
+     * Builds a ChangeEvent from the current row of the change log
+     */
+    private ChangeEvent mapChangeEvent(ResultSet rs) throws SQLException {
+        int transactionId = rs.getInt("transaction_id");
+        int lastTransactionId = rs.getInt("last_transaction_id");
+        return new ChangeEvent(
+                rs.getLong("seq"),
+                ChangeEvent.Type.valueOf(rs.getString("change_type")),
+                transactionId,
+                rs.wasNull() ? transactionId : lastTransactionId,
+                mapLoggedTransaction(rs, transactionId, "before_"),
+                mapLoggedTransaction(rs, transactionId, "after_")
+        );
+    }
+
+    /**
+     * Builds one side (before_ or after_) of a change log row, or null if
+     * the change has no such side
+     */
+    private static Transaction mapLoggedTransaction(ResultSet rs, int transactionId, String prefix)
+            throws SQLException {
+        Date date = rs.getDate(prefix + "date");
+        if (date == null) {
+            return null;
+        }
+        return new Transaction(
+                transactionId,
+                rs.getLong(prefix + "amount_cents"),
+                date.toLocalDate(),
+                rs.getString(prefix + "category"),
+                rs.getString(prefix + "payment_method"),
+                rs.getBoolean(prefix + "is_income"),
+                rs.getBoolean(prefix + "recurring")
+        );
+    }
+
+    /**
+     * Builds a RecurrenceRule from the current row of a result set
+     */
+    private RecurrenceRule mapRecurrenceRule(ResultSet rs) throws SQLException {
+        Date endDate = rs.getDate("end_date");
+        return new RecurrenceRule(
+                rs.getInt("rule_id"),
+                rs.getLong("amount_cents"),
+                rs.getString("category"),
+                rs.getString("payment_method"),
+                rs.getBoolean("is_income"),
+                RecurrenceRule.Frequency.valueOf(rs.getString("frequency")),
+                rs.getInt("interval_count"),
+                rs.getDate("start_date").toLocalDate(),
+                endDate == null ? null : endDate.toLocalDate(),
+                rs.getInt("occurrences")
+        );
+    }
+
+    /**
+     * Reports the connection settings in effect, for troubleshooting
+     *
+     * @return Map of setting name to value, including the statement cache hit rate
+     */
+    public Map<String, String> getDiagnostics() {
+        Map<String, String> diagnostics = new LinkedHashMap<>();
+        diagnostics.put("url", config.getUrl());
+        diagnostics.put("profile", profile.getName());
+        try (ConnectionPool.Lease lease = pool.reader()) {
+            diagnostics.putAll(PerformanceProfile.readSettings(lease.getConnection()));
+        } catch (SQLException e) {
+            System.err.println("Error reading connection settings: " + e.getMessage());
+        }
+        diagnostics.putAll(pool.getMetrics());
+        return diagnostics;
+    }
+
+    public DatabaseConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns the backup manager for this database, configured from the
+     * savr.backup.* system properties
+     */
+    public BackupManager getBackupManager() {
+        if (backupManager == null) {
+            synchronized (this) {
+                if (backupManager == null) {
+                    backupManager = new BackupManager(this);
+                }
+            }
+        }
+        return backupManager;
+    }
+
+    /**
+     * Writes a consistent, compacted copy of the database to a new file with
+     * VACUUM INTO. It runs in a single read transaction on a reader, so under
+     * WAL it sees one snapshot while writers carry on; without readers it
+     * holds the writer until the copy is done.
+     *
+     * @param file Destination, which must not exist yet
+     * @return true if the copy was written
+     */
+    public boolean snapshotTo(Path file) {
+        long startTime = System.nanoTime();
+        try (ConnectionPool.Lease lease = pool.reader();
+             Statement statement = lease.getConnection().createStatement()) {
+            // Readers are query_only, which also rules out VACUUM INTO; this lease is ours alone
+            if (!lease.isWriter()) {
+                statement.execute("PRAGMA query_only = 0");
+            }
+            try (PreparedStatement pstmt = lease.getConnection().prepareStatement("VACUUM INTO ?")) {
+                pstmt.setString(1, file.toString());
+                pstmt.executeUpdate();
+            } finally {
+                if (!lease.isWriter()) {
+                    statement.execute("PRAGMA query_only = 1");
+                }
+            }
+            System.out.println(String.format("Snapshot written to %s in %d ms.", file,
+                    (System.nanoTime() - startTime) / 1_000_000));
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error writing snapshot to " + file + ": " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Replaces the contents of the database with those of another database
+     * file, using the SQLite online backup API through sqlite-jdbc's restore
+     * command, which copies a batch of pages per step. The writer is held
+     * throughout, so no write can interleave; readers see the restored data
+     * once it completes. Afterwards the schema is migrated, the caches are
+     * rebuilt and the change listeners are told to reload.
+     *
+     * @param file Database file to copy in; check it with BackupManager.verify first
+     * @return true if the restore succeeded
+     */
+    public boolean restoreFrom(Path file) {
+        // The restore command has no escapes, so the path is quoted with a quote it does not contain
+        String path = file.toAbsolutePath().toString();
+        String quote = path.indexOf('"') < 0 ? "\"" : "'";
+        if (path.contains(quote)) {
+            System.err.println("Cannot restore from " + file + ": the path contains both kinds of quotes.");
+            return false;
+        }
+
+        try (ConnectionPool.Lease lease = pool.writer()) {
+            try (Statement statement = lease.getConnection().createStatement()) {
+                statement.executeUpdate("restore from " + quote + path + quote);
+            }
+            // A backup from an older version is brought up to date like a database on startup
+            new SchemaMigrator(lease.getConnection()).migrate();
+            createSummaryTables(lease);
+
+            if (aggregateCache != null) {
+                aggregateCache.rebuild(this);
+            }
+            if (budgetTracker != null) {
+                budgetTracker.rebuild(this);
             }
+            if (!changeListeners.isEmpty()) {
+                publishedSeq = getLatestChangeSeq();
+                for (ChangeListener listener : changeListeners) {
+                    listener.onReset();
+                }
+            }
+            return true;
         } catch (SQLException e) {
-            System.err.println("Error closing database connection: " + e.getMessage());
+            System.err.println("Error restoring from " + file + ": " + e.getMessage());
             e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Number of read-only connections, 0 when every call uses the writer
+     */
+    public int getReaderCount() {
+        return pool.getReaderCount();
+    }
+
+    /**
+     * Close the database connections
+     */
+    public void closeConnection() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+            System.out.println("Database connection closed.");
         }
     }
 }
@@ -0,0 +1,235 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Generates realistic, repeatable ledgers for load and scale testing.
+ * The same seed always produces the same rows. Categories and payment
+ * methods are the ones offered by the Savr forms, with popularity skewed
+ * towards the first entries; amounts are log-normal around a typical value
+ * per category; dates follow a seasonal curve that peaks in December; a
+ * share of rows are income and a share are recurring.
+ *
+ * Rows are produced lazily, so tens of millions can be streamed straight
+ * into a database or CSV file without being held in memory.
+ */
+public class LedgerGenerator implements Iterable<Transaction> {
+    private static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    // Fixed rather than today, so a seed names the same ledger on any day
+    private static final LocalDate DEFAULT_END_DATE = LocalDate.of(2024, 12, 31);
+
+    // Typical (median) amount per category, in the same order as Savr.CATEGORIES
+    private static final double[] CATEGORY_MEDIANS = {25, 40, 1200, 45, 80, 300, 30};
+
+    // Relative transaction volume per calendar month, January first
+    private static final double[] SEASONAL_WEIGHTS =
+            {0.85, 0.85, 0.95, 1.0, 1.0, 1.05, 1.1, 1.05, 0.95, 1.0, 1.15, 1.4};
+
+    private static final double AMOUNT_SIGMA = 0.6;
+    private static final String INCOME_CATEGORY = "Other";
+
+    private final long seed;
+    private final long count;
+    private final LocalDate startDate;
+    private final int days;
+    private final double[] categoryCumulative;
+    private double incomeRatio = 0.08;
+    private double recurringRatio = 0.1;
+
+    /**
+     * @param seed Random seed; equal seeds give identical ledgers
+     * @param count Number of transactions to generate
+     * @param startDate First possible transaction date
+     * @param endDate Last possible transaction date
+     * @param skew Zipf exponent for category popularity; 0 makes all categories equally likely
+     */
+    public LedgerGenerator(long seed, long count, LocalDate startDate, LocalDate endDate, double skew) {
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("End date " + endDate + " is before start date " + startDate);
+        }
+        this.seed = seed;
+        this.count = count;
+        this.startDate = startDate;
+        this.days = (int) ChronoUnit.DAYS.between(startDate, endDate) + 1;
+
+        categoryCumulative = new double[Savr.CATEGORIES.length];
+        double total = 0;
+        for (int i = 0; i < categoryCumulative.length; i++) {
+            total += 1.0 / Math.pow(i + 1, skew);
+            categoryCumulative[i] = total;
+        }
+        for (int i = 0; i < categoryCumulative.length; i++) {
+            categoryCumulative[i] /= total;
+        }
+    }
+
+    /**
+     * Sets the share of rows that are income (default 0.08)
+     */
+    public void setIncomeRatio(double incomeRatio) {
+        this.incomeRatio = incomeRatio;
+    }
+
+    /**
+     * Sets the share of rows flagged as recurring (default 0.1); housing
+     * expenses are always recurring
+     */
+    public void setRecurringRatio(double recurringRatio) {
+        this.recurringRatio = recurringRatio;
+    }
+
+    @Override
+    public Iterator<Transaction> iterator() {
+        Random random = new Random(seed);
+
+        return new Iterator<Transaction>() {
+            private long generated;
+
+            @Override
+            public boolean hasNext() {
+                return generated < count;
+            }
+
+            @Override
+            public Transaction next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                generated++;
+                return nextTransaction(random);
+            }
+        };
+    }
+
+    private Transaction nextTransaction(Random random) {
+        LocalDate date = nextDate(random);
+        String paymentMethod = Savr.PAYMENT_METHODS[random.nextInt(Savr.PAYMENT_METHODS.length)];
+
+        if (random.nextDouble() < incomeRatio) {
+            long amount = toCents(2500 * Math.exp(0.3 * random.nextGaussian()));
+            return new Transaction(0, amount, date, INCOME_CATEGORY, paymentMethod, true,
+                    random.nextDouble() < recurringRatio);
+        }
+
+        int category = nextCategory(random);
+        long amount = toCents(CATEGORY_MEDIANS[category] * Math.exp(AMOUNT_SIGMA * random.nextGaussian()));
+        boolean recurring = Savr.CATEGORIES[category].equals("Housing") || random.nextDouble() < recurringRatio;
+        return new Transaction(0, Math.max(amount, 1), date, Savr.CATEGORIES[category], paymentMethod,
+                false, recurring);
+    }
+
+    private int nextCategory(Random random) {
+        double r = random.nextDouble();
+        for (int i = 0; i < categoryCumulative.length; i++) {
+            if (r < categoryCumulative[i]) {
+                return i;
+            }
+        }
+        return categoryCumulative.length - 1;
+    }
+
+    /**
+     * Picks a date in range, accepting it with probability proportional to
+     * its month's seasonal weight
+     */
+    private LocalDate nextDate(Random random) {
+        double maxWeight = 1.4;
+        while (true) {
+            LocalDate date = startDate.plusDays(random.nextInt(days));
+            if (random.nextDouble() * maxWeight < SEASONAL_WEIGHTS[date.getMonthValue() - 1]) {
+                return date;
+            }
+        }
+    }
+
+    private static long toCents(double dollars) {
+        return Math.round(dollars * 100);
+    }
+
+    /**
+     * Streams the generated ledger into a database in batches
+     *
+     * @param db Database to fill
+     * @param batchSize Rows per batch/commit
+     * @return Number of rows committed, fewer than requested if the insert failed
+     */
+    public int writeTo(DatabaseManager db, int batchSize) {
+        return db.addTransactions(this, batchSize);
+    }
+
+    /**
+     * Writes the generated ledger as CSV in the format TransactionImporter reads
+     *
+     * @param file Destination file, overwritten if it exists
+     */
+    public void writeCsv(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("amount,date,category,payment_method,is_income,recurring");
+            writer.newLine();
+            for (Transaction t : this) {
+                writer.write(String.format(Locale.ROOT, "%s,%s,%s,%s,%b,%b", Money.toPlainString(t.getAmountCents()),
+                        t.getDate(), t.getCategory(), t.getPaymentMethod(), t.isIncome(), t.isRecurring()));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Command line entry point.
+     *
+     * Usage: LedgerGenerator rows [seed] [skew] [--end yyyy-MM-dd] [--csv file | --ledger name]
+     * Dates span the ten years up to --end (default 2024-12-31). Without --csv
+     * or --ledger the rows go into the configured default database.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: LedgerGenerator rows [seed] [skew] [--end yyyy-MM-dd] " +
+                    "[--csv file | --ledger name]");
+            System.exit(1);
+        }
+
+        long rows = Long.parseLong(args[0]);
+        long seed = args.length > 1 && !args[1].startsWith("--") ? Long.parseLong(args[1]) : 42;
+        double skew = args.length > 2 && !args[1].startsWith("--") && !args[2].startsWith("--")
+                ? Double.parseDouble(args[2]) : 1.0;
+        String csvFile = null;
+        String ledger = null;
+        LocalDate endDate = DEFAULT_END_DATE;
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--end")) {
+                endDate = LocalDate.parse(args[i + 1]);
+            } else if (args[i].equals("--csv")) {
+                csvFile = args[i + 1];
+            } else if (args[i].equals("--ledger")) {
+                ledger = args[i + 1];
+            }
+        }
+
+        LedgerGenerator generator = new LedgerGenerator(seed, rows, endDate.minusYears(10), endDate, skew);
+        long startTime = System.nanoTime();
+        long written = rows;
+
+        if (csvFile != null) {
+            generator.writeCsv(Paths.get(csvFile));
+        } else {
+            DatabaseManager db = new DatabaseManager(ledger != null ? DatabaseConfig.forLedger(ledger)
+                    : DatabaseConfig.load());
+            written = generator.writeTo(db, DEFAULT_BATCH_SIZE);
+            db.closeConnection();
+        }
+
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.println(String.format("Generated %,d transactions in %.1f s (%.0f rows/s).", written, seconds,
+                seconds > 0 ? written / seconds : (double) written));
+    }
+}
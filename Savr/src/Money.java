@@ -0,0 +1,95 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Helpers for money amounts held as a long number of cents. Amounts are
+ * stored, summed and compared as cents so totals are exact; conversion to
+ * dollars only happens at the edges, when parsing user input or imported
+ * files and when formatting for display or export.
+ */
+public final class Money {
+    private Money() {
+    }
+
+    /**
+     * Parses a dollar amount such as "12.34", "$1,200" or "-0.5". More than
+     * two decimal places are rounded half-up to the nearest cent.
+     *
+     * @param text Amount as typed or imported
+     * @return Amount in cents
+     * @throws NumberFormatException if the text is not a valid amount
+     */
+    public static long parse(String text) {
+        String cleaned = text.trim().replace("$", "").replace(",", "");
+        if (cleaned.isEmpty()) {
+            throw new NumberFormatException("Empty amount");
+        }
+        return fromDecimal(new BigDecimal(cleaned));
+    }
+
+    /**
+     * Converts an exact decimal dollar amount to cents, rounding half-up
+     */
+    public static long fromDecimal(BigDecimal dollars) {
+        try {
+            return dollars.setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + dollars.toPlainString());
+        }
+    }
+
+    /**
+     * Converts cents to dollars for chart geometry and other approximate uses;
+     * never sum the results
+     */
+    public static double toDollars(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * Formats cents as a plain decimal, e.g. -1234.56, for files and edit fields
+     */
+    public static String toPlainString(long cents) {
+        StringBuilder text = new StringBuilder(16);
+        if (cents < 0) {
+            text.append('-');
+        }
+        appendDollars(text, cents, false);
+        return text.toString();
+    }
+
+    /**
+     * Formats cents for display, e.g. $1,234.56 or -$12.00
+     */
+    public static String format(long cents) {
+        StringBuilder text = new StringBuilder(16);
+        if (cents < 0) {
+            text.append('-');
+        }
+        text.append('$');
+        appendDollars(text, cents, true);
+        return text.toString();
+    }
+
+    private static void appendDollars(StringBuilder text, long cents, boolean grouping) {
+        // Long.MIN_VALUE has no positive counterpart, so split before negating
+        long dollars = Math.abs(cents / 100);
+        int remainder = (int) Math.abs(cents % 100);
+
+        String digits = Long.toString(dollars);
+        if (grouping) {
+            int firstGroup = digits.length() % 3 == 0 ? 3 : digits.length() % 3;
+            text.append(digits, 0, firstGroup);
+            for (int i = firstGroup; i < digits.length(); i += 3) {
+                text.append(',').append(digits, i, i + 3);
+            }
+        } else {
+            text.append(digits);
+        }
+        text.append('.');
+        if (remainder < 10) {
+            text.append('0');
+        }
+        text.append(remainder);
+    }
+}
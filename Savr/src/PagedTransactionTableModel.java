@@ -0,0 +1,241 @@
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Table model for the View Transactions tab that loads rows from the
+ * database one page at a time. Only the row count and a small window of
+ * recently used pages are kept in memory. Pages are fetched in the
+ * background; rows show as blank until their page arrives. The rows shown
+ * are those matching the current TransactionQuery.
+ */
+public class PagedTransactionTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] COLUMNS = {"ID", "Amount", "Date", "Category", "Type", "Edit"};
+    private static final int PAGE_SIZE = 500;
+    private static final int MAX_CACHED_PAGES = 8;
+
+    private final AsyncDatabaseManager asyncDb;
+    private TransactionQuery query = new TransactionQuery();
+    private int rowCount;
+
+    // Bumped on every refresh so pages loaded for older data are discarded
+    private int generation;
+    private final Set<Integer> loadingPages = new HashSet<>();
+
+    // Least recently used pages are evicted once the cache is full
+    private final Map<Integer, List<Transaction>> pages =
+            new LinkedHashMap<Integer, List<Transaction>>(MAX_CACHED_PAGES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, List<Transaction>> eldest) {
+                    return size() > MAX_CACHED_PAGES;
+                }
+            };
+
+    public PagedTransactionTableModel(AsyncDatabaseManager asyncDb) {
+        this.asyncDb = asyncDb;
+        refresh();
+    }
+
+    /**
+     * Shows only the transactions matching a query and reloads the table.
+     * Must be called on the event dispatch thread.
+     *
+     * @param query Search criteria; copied, so later changes to it have no effect
+     */
+    public void setQuery(TransactionQuery query) {
+        this.query = new TransactionQuery(query);
+        refresh();
+    }
+
+    public TransactionQuery getQuery() {
+        return new TransactionQuery(query);
+    }
+
+    /**
+     * Drops all cached pages and re-reads the row count from the database.
+     * Must be called on the event dispatch thread.
+     */
+    public void refresh() {
+        int requestGeneration = ++generation;
+        TransactionQuery current = query;
+        AsyncDatabaseManager.onEdt(asyncDb.submitLatest("table-count", db -> db.countTransactions(current)),
+                count -> {
+                    if (requestGeneration != generation) {
+                        return;
+                    }
+                    pages.clear();
+                    loadingPages.clear();
+                    rowCount = count;
+                    fireTableDataChanged();
+                });
+    }
+
+    /**
+     * Applies committed changes to the loaded rows instead of reloading the
+     * table. Changes to rows outside the query are ignored, and an update
+     * that keeps a row's date and match is patched into its cached page.
+     * Anything that adds, removes or reorders rows, and any bulk insert,
+     * falls back to refresh.
+     * Must be called on the event dispatch thread.
+     *
+     * @param changes Change log entries in sequence order
+     */
+    public void applyChanges(List<ChangeEvent> changes) {
+        boolean reload = false;
+        for (ChangeEvent change : changes) {
+            if (change.getType() == ChangeEvent.Type.BULK) {
+                // Bulk inserts are logged without their rows
+                reload = true;
+                continue;
+            }
+            Transaction before = change.getBefore();
+            Transaction after = change.getAfter();
+            boolean wasShown = before != null && query.matches(before);
+            boolean isShown = after != null && query.matches(after);
+
+            if (wasShown && isShown && before.getDate().equals(after.getDate())) {
+                replaceCachedRow(after);
+            } else if (wasShown || isShown) {
+                reload = true;
+            }
+        }
+        if (reload) {
+            refresh();
+        }
+    }
+
+    /**
+     * Swaps a transaction into the cached page holding it, if any
+     */
+    private void replaceCachedRow(Transaction t) {
+        for (Map.Entry<Integer, List<Transaction>> page : pages.entrySet()) {
+            List<Transaction> rows = page.getValue();
+            for (int i = 0; i < rows.size(); i++) {
+                if (rows.get(i).getId() == t.getId()) {
+                    rows.set(i, t);
+                    int row = page.getKey() * PAGE_SIZE + i;
+                    fireTableRowsUpdated(row, row);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the transaction shown at the given row. If its page is not
+     * cached yet, a background load is started and null is returned.
+     *
+     * @param row Row index in the model
+     * @return The transaction, or null if it is not loaded or no longer exists
+     */
+    public Transaction getTransactionAt(int row) {
+        int pageIndex = row / PAGE_SIZE;
+        List<Transaction> page = pages.get(pageIndex);
+        if (page == null) {
+            loadPage(pageIndex);
+            return null;
+        }
+
+        int offset = row % PAGE_SIZE;
+        return offset < page.size() ? page.get(offset) : null;
+    }
+
+    /**
+     * Fetches a page in the background and repaints its rows once it arrives.
+     * When the page before it is cached (the usual case while scrolling
+     * down), the page is read by seeking past that page's last row instead
+     * of with an OFFSET, which would re-scan every earlier row.
+     */
+    private void loadPage(int pageIndex) {
+        if (!loadingPages.add(pageIndex)) {
+            return;
+        }
+
+        List<Transaction> previous = pages.get(pageIndex - 1);
+        CompletableFuture<List<Transaction>> request;
+        if (previous != null && previous.size() == PAGE_SIZE) {
+            Transaction last = previous.get(PAGE_SIZE - 1);
+            request = asyncDb.searchTransactionsAfter(query, last.getDate(), last.getId(), PAGE_SIZE);
+        } else {
+            request = asyncDb.searchTransactions(query, pageIndex * PAGE_SIZE, PAGE_SIZE);
+        }
+
+        int requestGeneration = generation;
+        request.whenComplete((page, error) -> {
+            if (error != null) {
+                // Forget a failed request so the page is asked for again the next time it is shown
+                SwingUtilities.invokeLater(() -> {
+                    if (requestGeneration == generation) {
+                        loadingPages.remove(pageIndex);
+                    }
+                });
+            }
+        });
+        AsyncDatabaseManager.onEdt(request, page -> {
+            if (requestGeneration != generation) {
+                return;
+            }
+            loadingPages.remove(pageIndex);
+            pages.put(pageIndex, page);
+
+            int firstRow = pageIndex * PAGE_SIZE;
+            int lastRow = Math.min(firstRow + PAGE_SIZE, rowCount) - 1;
+            if (lastRow >= firstRow) {
+                fireTableRowsUpdated(firstRow, lastRow);
+            }
+        });
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return column == 5; // Only Edit column is editable
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (column == 5) {
+            return "Edit";
+        }
+
+        Transaction t = getTransactionAt(row);
+        if (t == null) {
+            return null;
+        }
+
+        switch (column) {
+            case 0: return t.getId();
+            case 1: return Money.format(t.getAmountCents());
+            case 2: return t.getDate();
+            case 3: return t.getCategory();
+            case 4: return t.getPaymentMethod();
+            default: return null;
+        }
+    }
+
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        // Rows are edited through the edit dialog, never in place
+    }
+}
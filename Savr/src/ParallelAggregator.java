@@ -0,0 +1,194 @@
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Aggregates a ColumnarLedger on a ForkJoinPool. The ledger is split into
+ * row ranges; each leaf task sums its range into its own primitive
+ * accumulators (no shared state, no boxing) and the partial results are
+ * merged on the way back up. A single pass produces the category, payment
+ * method and monthly totals the dashboard needs, split into income and
+ * expenses. The ledger must not be added to while a pass is running.
+ *
+ * Parallelism defaults to the number of cores and can be set with the
+ * savr.aggregation.parallelism system property or the constructor.
+ */
+public class ParallelAggregator {
+    // Leaves smaller than this cost more to schedule than to scan
+    private static final int MIN_CHUNK_ROWS = 1 << 16;
+
+    // Leaves per worker, so a slow core does not hold up the whole pass
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Uses savr.aggregation.parallelism threads, or one per core
+     */
+    public ParallelAggregator() {
+        this(Integer.getInteger("savr.aggregation.parallelism", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param parallelism Number of worker threads
+     */
+    public ParallelAggregator(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Totals of one aggregation pass, in cents
+     */
+    public static class Totals {
+        private final ColumnarLedger ledger;
+        private final long[] categoryTotals;
+        private final long[] paymentMethodTotals;
+        private final long[] monthlyTotals;
+
+        private Totals(ColumnarLedger ledger, int months) {
+            this.ledger = ledger;
+            this.categoryTotals = new long[ledger.getCategories().size() * 2];
+            this.paymentMethodTotals = new long[ledger.getPaymentMethods().size() * 2];
+            this.monthlyTotals = new long[months * 2];
+        }
+
+        private Totals merge(Totals other) {
+            add(categoryTotals, other.categoryTotals);
+            add(paymentMethodTotals, other.paymentMethodTotals);
+            add(monthlyTotals, other.monthlyTotals);
+            return this;
+        }
+
+        private static void add(long[] target, long[] values) {
+            for (int i = 0; i < target.length; i++) {
+                target[i] += values[i];
+            }
+        }
+
+        public Map<String, Long> getCategoryTotals(boolean isIncome) {
+            return byCode(ledger.getCategories(), categoryTotals, isIncome);
+        }
+
+        public Map<String, Long> getPaymentMethodTotals(boolean isIncome) {
+            return byCode(ledger.getPaymentMethods(), paymentMethodTotals, isIncome);
+        }
+
+        /**
+         * @return Map of month (yyyy-MM) to total, ordered by month
+         */
+        public Map<String, Long> getMonthlyTotals(boolean isIncome) {
+            Map<String, Long> result = new TreeMap<>();
+            YearMonth month = ledger.getFirstMonth();
+            for (int i = isIncome ? 1 : 0; i < monthlyTotals.length; i += 2, month = month.plusMonths(1)) {
+                if (monthlyTotals[i] != 0) {
+                    result.put(month.toString(), monthlyTotals[i]);
+                }
+            }
+            return result;
+        }
+
+        private static Map<String, Long> byCode(ColumnarLedger.Dictionary dictionary, long[] totals,
+                                                boolean isIncome) {
+            // Code 0 holds rows without a value; like AggregateCache, those are left out
+            Map<String, Long> result = new TreeMap<>();
+            for (int code = 1; code * 2 < totals.length; code++) {
+                long value = totals[code * 2 + (isIncome ? 1 : 0)];
+                if (value != 0) {
+                    result.put(dictionary.decode((short) code), value);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Aggregates every row of the ledger
+     */
+    public Totals aggregate(ColumnarLedger ledger) {
+        return aggregate(ledger, null, null);
+    }
+
+    /**
+     * Aggregates the rows dated within a range
+     *
+     * @param ledger Ledger to aggregate
+     * @param startDate Beginning of date range, or null for no lower bound
+     * @param endDate End of date range, or null for no upper bound
+     * @return Totals by category, payment method and month
+     */
+    public Totals aggregate(ColumnarLedger ledger, LocalDate startDate, LocalDate endDate) {
+        int fromDay = startDate == null ? Integer.MIN_VALUE : (int) startDate.toEpochDay();
+        int toDay = endDate == null ? Integer.MAX_VALUE : (int) endDate.toEpochDay();
+        int[] monthOfDay = ledger.monthIndex();
+        int months = monthOfDay.length == 0 ? 0 : monthOfDay[monthOfDay.length - 1] + 1;
+        int chunkRows = Math.max(MIN_CHUNK_ROWS,
+                ledger.size() / (pool.getParallelism() * CHUNKS_PER_THREAD) + 1);
+
+        return pool.invoke(new AggregateTask(ledger, 0, ledger.size(), chunkRows, fromDay, toDay,
+                monthOfDay, months));
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Stops the worker threads
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Sums a row range, splitting it in half until it is one chunk long
+     */
+    private static class AggregateTask extends RecursiveTask<Totals> {
+        private static final long serialVersionUID = 1L;
+
+        private final ColumnarLedger ledger;
+        private final int fromRow;
+        private final int toRow;
+        private final int chunkRows;
+        private final int fromDay;
+        private final int toDay;
+        private final int[] monthOfDay;
+        private final int months;
+
+        AggregateTask(ColumnarLedger ledger, int fromRow, int toRow, int chunkRows, int fromDay, int toDay,
+                      int[] monthOfDay, int months) {
+            this.ledger = ledger;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.chunkRows = chunkRows;
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            this.monthOfDay = monthOfDay;
+            this.months = months;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (toRow - fromRow <= chunkRows) {
+                Totals totals = new Totals(ledger, months);
+                ledger.accumulate(fromRow, toRow, fromDay, toDay, monthOfDay,
+                        totals.categoryTotals, totals.paymentMethodTotals, totals.monthlyTotals);
+                return totals;
+            }
+
+            int middle = (fromRow + toRow) >>> 1;
+            AggregateTask left = new AggregateTask(ledger, fromRow, middle, chunkRows, fromDay, toDay,
+                    monthOfDay, months);
+            AggregateTask right = new AggregateTask(ledger, middle, toRow, chunkRows, fromDay, toDay,
+                    monthOfDay, months);
+            left.fork();
+            Totals rightTotals = right.compute();
+            return left.join().merge(rightTotals);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * SQLite connection settings applied when a connection is opened. The
+ * presets trade durability for speed: SAFE keeps SQLite's defaults, BALANCED
+ * uses WAL with synchronous=NORMAL (the usual choice for a desktop app) and
+ * FAST additionally skips fsync, which can lose the last commits on a crash.
+ */
+public class PerformanceProfile {
+    public static final PerformanceProfile SAFE =
+            new PerformanceProfile("safe", "DELETE", "FULL", -2000, 0, "DEFAULT");
+    public static final PerformanceProfile BALANCED =
+            new PerformanceProfile("balanced", "WAL", "NORMAL", -65536, 268435456L, "MEMORY");
+    public static final PerformanceProfile FAST =
+            new PerformanceProfile("fast", "WAL", "OFF", -262144, 1073741824L, "MEMORY");
+
+    private static final String[] DIAGNOSTIC_PRAGMAS =
+            {"journal_mode", "synchronous", "cache_size", "mmap_size", "temp_store", "page_size"};
+
+    private final String name;
+    private final String journalMode;
+    private final String synchronous;
+    private final int cacheSize;
+    private final long mmapSize;
+    private final String tempStore;
+
+    /**
+     * @param name Name shown in diagnostics
+     * @param journalMode PRAGMA journal_mode, e.g. WAL or DELETE
+     * @param synchronous PRAGMA synchronous: OFF, NORMAL or FULL
+     * @param cacheSize PRAGMA cache_size; negative values are KiB, positive values pages
+     * @param mmapSize PRAGMA mmap_size in bytes, 0 to disable memory mapping
+     * @param tempStore PRAGMA temp_store: DEFAULT, FILE or MEMORY
+     */
+    public PerformanceProfile(String name, String journalMode, String synchronous, int cacheSize,
+                              long mmapSize, String tempStore) {
+        this.name = name;
+        this.journalMode = journalMode;
+        this.synchronous = synchronous;
+        this.cacheSize = cacheSize;
+        this.mmapSize = mmapSize;
+        this.tempStore = tempStore;
+    }
+
+    /**
+     * Looks up a preset by name
+     *
+     * @param name safe, balanced or fast (case insensitive)
+     * @return The matching preset
+     */
+    public static PerformanceProfile named(String name) {
+        switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "safe":
+                return SAFE;
+            case "balanced":
+                return BALANCED;
+            case "fast":
+                return FAST;
+            default:
+                throw new IllegalArgumentException("Unknown performance profile: " + name);
+        }
+    }
+
+    /**
+     * Applies the pragmas to a freshly opened connection
+     */
+    public void apply(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode = " + journalMode);
+            statement.execute("PRAGMA synchronous = " + synchronous);
+            statement.execute("PRAGMA cache_size = " + cacheSize);
+            statement.execute("PRAGMA mmap_size = " + mmapSize);
+            statement.execute("PRAGMA temp_store = " + tempStore);
+        }
+    }
+
+    /**
+     * Reads back the settings actually in effect on a connection
+     *
+     * @return Map of pragma name to its current value
+     */
+    public static Map<String, String> readSettings(Connection connection) throws SQLException {
+        Map<String, String> settings = new LinkedHashMap<>();
+        try (Statement statement = connection.createStatement()) {
+            for (String pragma : DIAGNOSTIC_PRAGMAS) {
+                try (ResultSet rs = statement.executeQuery("PRAGMA " + pragma)) {
+                    settings.put(pragma, rs.next() ? rs.getString(1) : "");
+                }
+            }
+        }
+        return settings;
+    }
+
+    public String getName() { return name; }
+    public String getJournalMode() { return journalMode; }
+    public String getSynchronous() { return synchronous; }
+    public int getCacheSize() { return cacheSize; }
+    public long getMmapSize() { return mmapSize; }
+    public String getTempStore() { return tempStore; }
+
+    @Override
+    public String toString() {
+        return String.format("%s (journal_mode=%s, synchronous=%s, cache_size=%d, mmap_size=%d, temp_store=%s)",
+                name, journalMode, synchronous, cacheSize, mmapSize, tempStore);
+    }
+}
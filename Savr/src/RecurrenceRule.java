@@ -0,0 +1,178 @@
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A template transaction that repeats every interval days, weeks, months or
+ * years from its start date. Occurrence n is always computed from the start
+ * date, so a rule starting on the 31st falls on the last day of shorter
+ * months without drifting earlier afterwards.
+ */
+public class RecurrenceRule {
+
+    public enum Frequency {
+        DAILY(ChronoUnit.DAYS, "day"),
+        WEEKLY(ChronoUnit.WEEKS, "week"),
+        MONTHLY(ChronoUnit.MONTHS, "month"),
+        YEARLY(ChronoUnit.YEARS, "year");
+
+        private final ChronoUnit unit;
+        private final String noun;
+
+        Frequency(ChronoUnit unit, String noun) {
+            this.unit = unit;
+            this.noun = noun;
+        }
+    }
+
+    // "monthly", "every 2 weeks", "every 10 days", ...
+    private static final Pattern EVERY = Pattern.compile("every\\s+(\\d+)\\s+(day|week|month|year)s?");
+
+    private final int id;
+    private final long amountCents;
+    private final String category;
+    private final String paymentMethod;
+    private final boolean isIncome;
+    private final Frequency frequency;
+    private final int interval;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final int occurrences;
+
+    /**
+     * @param id Rule ID, or 0 for a rule not yet saved
+     * @param amountCents Amount of each occurrence in cents
+     * @param category Category of each occurrence
+     * @param paymentMethod Payment method of each occurrence
+     * @param isIncome Whether the occurrences are income
+     * @param frequency Unit the rule repeats in
+     * @param interval Number of units between occurrences
+     * @param startDate Date of the first occurrence
+     * @param endDate Last date an occurrence may fall on, or null to repeat forever
+     * @param occurrences Number of occurrences already turned into transactions
+     */
+    public RecurrenceRule(int id, long amountCents, String category, String paymentMethod, boolean isIncome,
+                          Frequency frequency, int interval, LocalDate startDate, LocalDate endDate,
+                          int occurrences) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Interval must be positive: " + interval);
+        }
+        this.id = id;
+        this.amountCents = amountCents;
+        this.category = category;
+        this.paymentMethod = paymentMethod;
+        this.isIncome = isIncome;
+        this.frequency = frequency;
+        this.interval = interval;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.occurrences = occurrences;
+    }
+
+    /**
+     * Creates an unsaved rule from a schedule such as "weekly", "monthly",
+     * "quarterly", "yearly" or "every 3 weeks"
+     *
+     * @throws IllegalArgumentException If the schedule is not understood
+     */
+    public static RecurrenceRule parse(String schedule, LocalDate startDate, long amountCents, String category,
+                                       String paymentMethod, boolean isIncome) {
+        String spec = schedule.trim().toLowerCase(Locale.ROOT);
+        Frequency frequency;
+        int interval = 1;
+
+        switch (spec) {
+            case "daily":
+                frequency = Frequency.DAILY;
+                break;
+            case "weekly":
+                frequency = Frequency.WEEKLY;
+                break;
+            case "biweekly":
+                frequency = Frequency.WEEKLY;
+                interval = 2;
+                break;
+            case "monthly":
+                frequency = Frequency.MONTHLY;
+                break;
+            case "quarterly":
+                frequency = Frequency.MONTHLY;
+                interval = 3;
+                break;
+            case "yearly":
+                frequency = Frequency.YEARLY;
+                break;
+            default:
+                Matcher matcher = EVERY.matcher(spec);
+                if (!matcher.matches()) {
+                    throw new IllegalArgumentException("Unknown schedule: " + schedule);
+                }
+                interval = Integer.parseInt(matcher.group(1));
+                frequency = Frequency.valueOf(matcher.group(2).equals("day") ? "DAILY"
+                        : matcher.group(2).toUpperCase(Locale.ROOT) + "LY");
+        }
+        return new RecurrenceRule(0, amountCents, category, paymentMethod, isIncome, frequency, interval,
+                startDate, null, 0);
+    }
+
+    /**
+     * Date of the nth occurrence, counting the start date as occurrence 0
+     */
+    public LocalDate occurrence(int n) {
+        return startDate.plus((long) n * interval, frequency.unit);
+    }
+
+    /**
+     * Date of the next occurrence not yet turned into a transaction
+     *
+     * @return The date, or null if the rule has ended
+     */
+    public LocalDate getNextDate() {
+        LocalDate next = occurrence(occurrences);
+        return endDate != null && next.isAfter(endDate) ? null : next;
+    }
+
+    /**
+     * Copy of this rule with more occurrences generated
+     */
+    public RecurrenceRule withOccurrences(int occurrences) {
+        return new RecurrenceRule(id, amountCents, category, paymentMethod, isIncome, frequency, interval,
+                startDate, endDate, occurrences);
+    }
+
+    /**
+     * The transaction for one occurrence date, not yet saved
+     */
+    public Transaction toTransaction(LocalDate date) {
+        return new Transaction(0, amountCents, date, category, paymentMethod, isIncome, true);
+    }
+
+    public int getId() { return id; }
+    public long getAmountCents() { return amountCents; }
+    public String getCategory() { return category; }
+    public String getPaymentMethod() { return paymentMethod; }
+    public boolean isIncome() { return isIncome; }
+    public Frequency getFrequency() { return frequency; }
+    public int getInterval() { return interval; }
+    public LocalDate getStartDate() { return startDate; }
+    public LocalDate getEndDate() { return endDate; }
+    public int getOccurrences() { return occurrences; }
+
+    /**
+     * The schedule in the form parse accepts, e.g. "monthly" or "every 2 weeks"
+     */
+    public String describeSchedule() {
+        if (interval == 1) {
+            return frequency.name().toLowerCase(Locale.ROOT);
+        }
+        return "every " + interval + " " + frequency.noun + "s";
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Rule #%d: %s %s %s from %s", id, Money.format(amountCents),
+                isIncome ? "income" : "expense", describeSchedule(), startDate);
+    }
+}
@@ -0,0 +1,92 @@
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Generates the transactions of due recurrence rules in the background. A
+ * run catches up every missed period in batches of BATCH_SIZE rows, each
+ * batch a single database transaction queued on the AsyncDatabaseManager
+ * thread, so other requests are served between batches and the UI never
+ * waits. Runs happen at start-up, then every savr.recurring.period.minutes
+ * minutes (default 60) so that occurrences appear once their day arrives.
+ */
+public class RecurringScheduler {
+    private static final int BATCH_SIZE = 500;
+
+    private final AsyncDatabaseManager asyncDb;
+    private final IntConsumer onGenerated;
+    private final ScheduledExecutorService timer;
+
+    // The run in progress, so overlapping triggers share it instead of queueing another
+    private CompletableFuture<Integer> currentRun;
+
+    /**
+     * @param asyncDb Database to generate transactions in
+     * @param onGenerated Called with the number of transactions a run
+     *                    generated, when it generated any; runs on the
+     *                    database thread
+     */
+    public RecurringScheduler(AsyncDatabaseManager asyncDb, IntConsumer onGenerated) {
+        this.asyncDb = asyncDb;
+        this.onGenerated = onGenerated;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "savr-recurring");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs now and then periodically until shutdown
+     */
+    public void start() {
+        long periodMinutes = Long.getLong("savr.recurring.period.minutes", 60);
+        timer.scheduleWithFixedDelay(this::runNow, 0, periodMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Generates everything due up to today, or joins the run already in progress
+     *
+     * @return Future completed with the number of transactions generated
+     */
+    public synchronized CompletableFuture<Integer> runNow() {
+        if (currentRun == null || currentRun.isDone()) {
+            long startTime = System.nanoTime();
+            currentRun = runBatches(LocalDate.now(), 0);
+            currentRun.thenAccept(generated -> {
+                if (generated > 0) {
+                    System.out.println(String.format("Generated %d recurring transactions in %d ms.",
+                            generated, (System.nanoTime() - startTime) / 1_000_000));
+                    onGenerated.accept(generated);
+                }
+            });
+        }
+        return currentRun;
+    }
+
+    /**
+     * Queues one batch, then the next if the batch was full
+     */
+    private CompletableFuture<Integer> runBatches(LocalDate asOf, int generatedSoFar) {
+        return asyncDb.materializeRecurringTransactions(asOf, BATCH_SIZE).thenCompose(generated -> {
+            // A failed batch was rolled back and logged; the next run retries it
+            if (generated < 0) {
+                return CompletableFuture.completedFuture(generatedSoFar);
+            }
+            if (generated == BATCH_SIZE) {
+                return runBatches(asOf, generatedSoFar + generated);
+            }
+            return CompletableFuture.completedFuture(generatedSoFar + generated);
+        });
+    }
+
+    /**
+     * Stops the timer. A batch already queued still completes.
+     */
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+}
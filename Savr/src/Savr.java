@@ -5,6 +5,7 @@ import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.AffineTransform;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -12,29 +13,87 @@ import java.util.Arrays;
  * Basic tabbed interface for Savr Finance App
  */
 public class Savr extends JFrame {
+    // Choices offered in the transaction forms
+    public static final String[] CATEGORIES =
+            {"Food", "Entertainment", "Housing", "Transportation", "Golfing", "Savings", "Other"};
+    public static final String[] PAYMENT_METHODS = {"Cash", "Credit Card", "Debit Card"};
+
+    // Chart styling, created once instead of on every paint
+    private static final java.util.Map<String, Color> CATEGORY_COLORS = new java.util.HashMap<>();
+    private static final Color OTHER_CATEGORY_COLOR = new Color(100, 100, 100);
+    private static final Color CREDIT_CARD_COLOR = new Color(255, 99, 132);
+    private static final Color DEBIT_CARD_COLOR = new Color(54, 162, 235);
+    private static final Color CASH_COLOR = new Color(75, 192, 192);
+    private static final Color EXPENSE_COLOR = new Color(255, 99, 132);
+    private static final Color INCOME_COLOR = new Color(75, 192, 192);
+    private static final Font CHART_TITLE_FONT = new Font("Arial", Font.BOLD, 16);
+    private static final Font CHART_TOTAL_FONT = new Font("Arial", Font.BOLD, 14);
+    private static final Stroke TREND_LINE_STROKE = new BasicStroke(2f);
+
+    // Trend chart layout: side margins, and the spacing below which buckets,
+    // points, markers and labels would run together
+    private static final int TREND_LEFT_MARGIN = 60;
+    private static final int TREND_RIGHT_MARGIN = 40;
+    private static final int TREND_MIN_BUCKET_PIXELS = 3;
+    private static final int TREND_MIN_POINT_PIXELS = 4;
+    private static final int TREND_MARKER_PIXELS = 12;
+    private static final int TREND_LABEL_PIXELS = 40;
+    private static final int TREND_MIN_VIEW_DAYS = 7;
+
+    static {
+        CATEGORY_COLORS.put("Food", new Color(255, 99, 132));
+        CATEGORY_COLORS.put("Entertainment", new Color(54, 162, 235));
+        CATEGORY_COLORS.put("Housing", new Color(255, 206, 86));
+        CATEGORY_COLORS.put("Transportation", new Color(75, 192, 192));
+        CATEGORY_COLORS.put("Savings", new Color(153, 102, 255));
+        CATEGORY_COLORS.put("Other", new Color(255, 159, 64));
+    }
+
     // Main components
     private JTabbedPane tabbedPane;
     private JButton addButton;
     private JPanel addTransactionPanel;
     private JPanel viewTransactionsPanel;
     private JPanel graphsPanel;
+    private JPanel budgetPanel;
     private JTextField amountField;
     private JTextField dateField;
     private JComboBox categoryField;
     private JComboBox paymentField;
     private JComboBox typeField;
-
-    // Database manager reference
+    private JComboBox<String> repeatField;
+    private PagedTransactionTableModel transactionTableModel;
+    private JLabel facetLabel;
+    private YearMonth budgetMonth = YearMonth.now();
+    private JLabel budgetMonthLabel;
+    private DefaultTableModel budgetTableModel;
+    private java.util.List<BudgetTracker.Status> budgetStatuses = new ArrayList<>();
+
+    // Database manager reference, all calls go through the background thread
     private DatabaseManager dbManager;
+    private AsyncDatabaseManager asyncDb;
+    private RecurringScheduler recurringScheduler;
 
     public Savr() {
+        this(DatabaseConfig.load());
+    }
+
+    /**
+     * Opens the window on a specific ledger
+     *
+     * @param config Database the window reads and writes
+     */
+    public Savr(DatabaseConfig config) {
         // Basic frame setup
         setTitle("Savr - Personal Finance Manager");
         setSize(800, 600);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
         // Initialize database manager
-        dbManager = new DatabaseManager();
+        dbManager = new DatabaseManager(config);
+        asyncDb = new AsyncDatabaseManager(dbManager);
+        // Generated rows reach the table through the change listener registered below
+        recurringScheduler = new RecurringScheduler(asyncDb, generated -> { });
 
         // Create tabbed pane
         tabbedPane = new JTabbedPane();
@@ -43,20 +102,44 @@ public class Savr extends JFrame {
         createAddTransactionPanel();
         createViewTransactionsPanel();
         createGraphsPanel();
+        createBudgetPanel();
 
         // Add panels to tabbed pane
         tabbedPane.addTab("Add Transaction", addTransactionPanel);
         tabbedPane.addTab("View Transactions", viewTransactionsPanel);
         tabbedPane.addTab("Graphs", graphsPanel);
+        tabbedPane.addTab("Budget", budgetPanel);
 
         // Add tabbed pane to frame
         getContentPane().add(tabbedPane);
 
+        // Apply each committed write to the views, and warn when spending passes 80% or
+        // 100% of a budget; registered before any recurring transactions are generated
+        asyncDb.submit(db -> {
+            db.addChangeListener(new ChangeListener() {
+                @Override
+                public void onChanges(java.util.List<ChangeEvent> changes) {
+                    SwingUtilities.invokeLater(() -> onTransactionsChanged(changes));
+                }
+
+                @Override
+                public void onReset() {
+                    SwingUtilities.invokeLater(() -> onTransactionsReset());
+                }
+            });
+            db.getBudgetTracker().addListener(event -> SwingUtilities.invokeLater(() -> onBudgetThreshold(event)));
+            return null;
+        });
+
+        // Catch up on recurring transactions once the table exists to show them
+        recurringScheduler.start();
+
         // Close database on window close
         addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
-                dbManager.closeConnection();
+                recurringScheduler.shutdown();
+                asyncDb.shutdown();
             }
         });
     }
@@ -81,30 +164,49 @@ public class Savr extends JFrame {
         formPanel.add(dateField);
 
         formPanel.add(new JLabel("Category:"));
-        categoryField = new JComboBox<>(new String[]{"Food", "Entertainment", "Housing", "Transportation", "Golfing", "Savings", "Other"});
+        categoryField = new JComboBox<>(CATEGORIES);
         formPanel.add(categoryField);
 
         formPanel.add(new JLabel("Payment Method:"));
-        paymentField = new JComboBox<>(new String[]{"Cash", "Credit Card", "Debit Card"});
+        paymentField = new JComboBox<>(PAYMENT_METHODS);
         formPanel.add(paymentField);
 
         formPanel.add(new JLabel("Type:"));
         typeField = new JComboBox<>(new String[]{"Expense", "Income"});
         formPanel.add(typeField);
 
+        // Editable, so custom schedules like "every 10 days" can be typed in
+        formPanel.add(new JLabel("Repeat:"));
+        repeatField = new JComboBox<>(new String[]{"Never", "Weekly", "Biweekly", "Monthly", "Quarterly", "Yearly"});
+        repeatField.setEditable(true);
+        formPanel.add(repeatField);
+
         addButton = new JButton("Add Transaction");
 
         addButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                double amount = Double.parseDouble(amountField.getText());
-                LocalDate date = LocalDate.parse(dateField.getText());
-                String category = categoryField.getSelectedItem().toString();
-                String payment = paymentField.getSelectedItem().toString();
-                boolean isIncome = typeField.getSelectedItem().toString().equals("Income");
-
-                dbManager.addTransaction(amount, date, category, payment, isIncome, false);
-                refreshTransactionTable();
+                try {
+                    long amountCents = Money.parse(amountField.getText());
+                    LocalDate date = LocalDate.parse(dateField.getText());
+                    String category = categoryField.getSelectedItem().toString();
+                    String payment = paymentField.getSelectedItem().toString();
+                    boolean isIncome = typeField.getSelectedItem().toString().equals("Income");
+                    String repeat = repeatField.getSelectedItem().toString();
+
+                    if (repeat.trim().equalsIgnoreCase("Never")) {
+                        asyncDb.addTransaction(amountCents, date, category, payment, isIncome, false);
+                    } else {
+                        // The scheduler creates the first occurrence, and any already past, right away
+                        RecurrenceRule rule = RecurrenceRule.parse(repeat, date, amountCents, category,
+                                payment, isIncome);
+                        AsyncDatabaseManager.onEdt(asyncDb.addRecurrenceRule(rule),
+                                id -> recurringScheduler.runNow());
+                    }
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(Savr.this, "Please enter valid values: " + ex.getMessage(),
+                            "Input Error", JOptionPane.ERROR_MESSAGE);
+                }
             }
         });
 
@@ -120,31 +222,10 @@ public class Savr extends JFrame {
     private void createViewTransactionsPanel() {
         viewTransactionsPanel = new JPanel(new BorderLayout());
 
-        // Add ID to columns (but we'll hide it later)
-        String[] columns = {"ID", "Amount", "Date", "Category", "Type", "Edit"};
-        ArrayList<Transaction> transactions = (ArrayList<Transaction>) dbManager.getAllTransactions();
-
-        // Now include the ID in the data array
-        Object[][] data = new Object[transactions.size()][6];
-        for (int i = 0; i < transactions.size(); i++) {
-            Transaction t = transactions.get(i);
-            data[i][0] = t.getId(); // Assuming you have a getId() method in Transaction
-            data[i][1] = t.getAmount();
-            data[i][2] = t.getDate();
-            data[i][3] = t.getCategory();
-            data[i][4] = t.getPaymentMethod();
-            data[i][5] = "Edit";
-        }
+        // Rows are loaded page by page, the ID column is hidden later
+        transactionTableModel = new PagedTransactionTableModel(asyncDb);
 
-        // Create model with override to make last column cells clickable
-        DefaultTableModel model = new DefaultTableModel(data, columns) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return column == 5; // Only Edit column is editable
-            }
-        };
-
-        JTable table = new JTable(model);
+        JTable table = new JTable(transactionTableModel);
 
         class ButtonRenderer extends JButton implements TableCellRenderer {
             public ButtonRenderer() {
@@ -185,26 +266,18 @@ public class Savr extends JFrame {
 
             @Override
             public Object getCellEditorValue() {
-                if (isPushed) {
-                    // Get transaction ID from the hidden column
-                    int transactionId = (int) table.getValueAt(row, 0);
-
-                    // Get transaction data for this row (adjusted column indices)
-                    double amount = (double) table.getValueAt(row, 1);
-                    LocalDate date = (LocalDate) table.getValueAt(row, 2);
-                    String category = (String) table.getValueAt(row, 3);
-                    String paymentMethod = (String) table.getValueAt(row, 4);
-
-                    // Create and show an edit dialog with the transaction ID
-                    showEditDialog(transactionId, amount, date, category, paymentMethod, row);
+                // Rows whose page is still loading have no data to edit yet
+                Transaction transaction = isPushed ? transactionTableModel.getTransactionAt(row) : null;
+                if (transaction != null) {
+                    showEditDialog(transaction, row);
                 }
                 isPushed = false;
                 return "Edit";
             }
 
-            // Update the method signature to include transactionId
-            private void showEditDialog(int transactionId, double amount, LocalDate date, String category,
-                                        String paymentMethod, int rowIndex) {
+            private void showEditDialog(Transaction transaction, int rowIndex) {
+                int transactionId = transaction.getId();
+
                 // Create a modal dialog for editing
                 JDialog dialog = new JDialog((Frame) SwingUtilities.getWindowAncestor(table),
                         "Edit Transaction", true);
@@ -218,23 +291,21 @@ public class Savr extends JFrame {
 
                 // Add form components with current values
                 formPanel.add(new JLabel("Amount:"));
-                JTextField amountField = new JTextField(String.valueOf(amount));
+                JTextField amountField = new JTextField(Money.toPlainString(transaction.getAmountCents()));
                 formPanel.add(amountField);
 
                 formPanel.add(new JLabel("Date:"));
-                JTextField dateField = new JTextField(date.toString());
+                JTextField dateField = new JTextField(transaction.getDate().toString());
                 formPanel.add(dateField);
 
                 formPanel.add(new JLabel("Category:"));
-                JComboBox<String> categoryField = new JComboBox<>(
-                        new String[]{"Food", "Entertainment", "Housing", "Transportation", "Golfing", "Savings", "Other"});
-                categoryField.setSelectedItem(category);
+                JComboBox<String> categoryField = new JComboBox<>(CATEGORIES);
+                categoryField.setSelectedItem(transaction.getCategory());
                 formPanel.add(categoryField);
 
                 formPanel.add(new JLabel("Payment Method:"));
-                JComboBox<String> paymentField = new JComboBox<>(
-                        new String[]{"Cash", "Credit Card", "Debit Card"});
-                paymentField.setSelectedItem(paymentMethod);
+                JComboBox<String> paymentField = new JComboBox<>(PAYMENT_METHODS);
+                paymentField.setSelectedItem(transaction.getPaymentMethod());
                 formPanel.add(paymentField);
 
                 // Create buttons panel
@@ -251,26 +322,16 @@ public class Savr extends JFrame {
                 saveButton.addActionListener(e -> {
                     try {
                         // Get updated values
-                        double newAmount = Double.parseDouble(amountField.getText());
+                        long newAmountCents = Money.parse(amountField.getText());
                         LocalDate newDate = LocalDate.parse(dateField.getText());
                         String newCategory = categoryField.getSelectedItem().toString();
                         String newPayment = paymentField.getSelectedItem().toString();
 
-                        // Update the database using the transaction ID
-                        dbManager.updateTransaction(transactionId, newAmount, newDate, newCategory, newPayment, false, false);
-
-                        // Update table model - make sure the row still exists
-                        if (rowIndex < table.getModel().getRowCount()) {
-                            table.setValueAt(newAmount, rowIndex, 1);
-                            table.setValueAt(newDate, rowIndex, 2);
-                            table.setValueAt(newCategory, rowIndex, 3);
-                            table.setValueAt(newPayment, rowIndex, 4);
-                        }
+                        // Type and recurrence are not editable here, so they keep their values
+                        asyncDb.updateTransaction(transactionId, newAmountCents, newDate, newCategory,
+                                newPayment, transaction.isIncome(), transaction.isRecurring());
 
                         dialog.dispose();
-
-                        // Refresh the table view
-                        refreshTransactionTable();
                     } catch (Exception ex) {
                         JOptionPane.showMessageDialog(dialog, "Please enter valid values: " + ex.getMessage(),
                                 "Input Error", JOptionPane.ERROR_MESSAGE);
@@ -288,32 +349,19 @@ public class Savr extends JFrame {
                     );
 
                     if (result == JOptionPane.YES_OPTION) {
-                        // Delete from database using the transaction ID
-                        dbManager.deleteTransaction(transactionId);
-
                         // Close the dialog first before manipulating the table
                         dialog.dispose();
 
-                        // Remove from table model safely
-                        try {
-                            if (rowIndex < table.getModel().getRowCount()) {
-                                ((DefaultTableModel)table.getModel()).removeRow(rowIndex);
-                            }
-                        } catch (Exception ex) {
-                            // Just in case there's an issue with removal
-                            System.out.println("Error removing row: " + ex.getMessage());
-                        }
-
-                        // Refresh the table (this would be a method you need to add)
-                        refreshTransactionTable();
-
-                        // Show confirmation message
-                        JOptionPane.showMessageDialog(
-                                table,
-                                "Transaction has been deleted successfully.",
-                                "Transaction Deleted",
-                                JOptionPane.INFORMATION_MESSAGE
-                        );
+                        // Delete from database using the transaction ID; the change listener updates the table
+                        AsyncDatabaseManager.onEdt(asyncDb.deleteTransaction(transactionId), deleted -> {
+                            // Show confirmation message
+                            JOptionPane.showMessageDialog(
+                                    table,
+                                    "Transaction has been deleted successfully.",
+                                    "Transaction Deleted",
+                                    JOptionPane.INFORMATION_MESSAGE
+                            );
+                        });
                     }
                 });
 
@@ -350,10 +398,7 @@ public class Savr extends JFrame {
         JScrollPane scrollPane = new JScrollPane(table);
 
         // Add filter panel
-        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        filterPanel.add(new JLabel("Filter by:"));
-        filterPanel.add(new JComboBox<>(new String[]{"All", "Income", "Expense"}));
-        filterPanel.add(new JButton("Apply Filter"));
+        JPanel filterPanel = createFilterPanel();
 
         // Add components to panel
         viewTransactionsPanel.add(new JLabel("View Transactions", SwingConstants.CENTER), BorderLayout.NORTH);
@@ -362,28 +407,287 @@ public class Savr extends JFrame {
     }
 
     /**
-     * Refreshes the transaction table with the latest data from the database
+     * Creates the search controls under the transaction table. Apply runs
+     * the query against the paged table and shows how many rows match per
+     * type, category and payment method.
      */
-    private void refreshTransactionTable() {
-        // Get updated transactions from the database
-        ArrayList<Transaction> transactions = (ArrayList<Transaction>) dbManager.getAllTransactions();
-
-        // Create a new model with the updated data
-        DefaultTableModel model = (DefaultTableModel) ((JTable)((JScrollPane)viewTransactionsPanel.getComponent(2)).getViewport().getView()).getModel();
-
-        // Clear existing data
-        model.setRowCount(0);
-
-        // Add updated data
-        for (Transaction t : transactions) {
-            model.addRow(new Object[]{
-                    t.getId(),
-                    t.getAmount(),
-                    t.getDate(),
-                    t.getCategory(),
-                    t.getPaymentMethod(),
-                    "Edit"
-            });
+    private JPanel createFilterPanel() {
+        JComboBox<String> typeFilter = new JComboBox<>(new String[]{"All", "Income", "Expense"});
+        JComboBox<String> categoryFilter = new JComboBox<>(withAll(CATEGORIES));
+        JComboBox<String> paymentFilter = new JComboBox<>(withAll(PAYMENT_METHODS));
+        JCheckBox recurringFilter = new JCheckBox("Recurring only");
+        JTextField fromField = new JTextField(8);
+        JTextField toField = new JTextField(8);
+        JTextField minAmountField = new JTextField(6);
+        JTextField maxAmountField = new JTextField(6);
+        JTextField textField = new JTextField(10);
+        JButton applyButton = new JButton("Apply Filter");
+        JButton clearButton = new JButton("Clear");
+        facetLabel = new JLabel(" ");
+
+        JPanel criteriaRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        criteriaRow.add(new JLabel("Filter by:"));
+        criteriaRow.add(typeFilter);
+        criteriaRow.add(new JLabel("Category:"));
+        criteriaRow.add(categoryFilter);
+        criteriaRow.add(new JLabel("Payment:"));
+        criteriaRow.add(paymentFilter);
+        criteriaRow.add(recurringFilter);
+
+        JPanel rangeRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        rangeRow.add(new JLabel("From (YYYY-MM-DD):"));
+        rangeRow.add(fromField);
+        rangeRow.add(new JLabel("To:"));
+        rangeRow.add(toField);
+        rangeRow.add(new JLabel("Amount:"));
+        rangeRow.add(minAmountField);
+        rangeRow.add(new JLabel("-"));
+        rangeRow.add(maxAmountField);
+        rangeRow.add(new JLabel("Search:"));
+        rangeRow.add(textField);
+        rangeRow.add(applyButton);
+        rangeRow.add(clearButton);
+
+        JPanel facetRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        facetRow.add(facetLabel);
+
+        applyButton.addActionListener(e -> {
+            try {
+                TransactionQuery query = new TransactionQuery();
+                String type = typeFilter.getSelectedItem().toString();
+                query.setIncome(type.equals("All") ? null : type.equals("Income"));
+                if (categoryFilter.getSelectedIndex() > 0) {
+                    query.setCategories(Arrays.asList(categoryFilter.getSelectedItem().toString()));
+                }
+                if (paymentFilter.getSelectedIndex() > 0) {
+                    query.setPaymentMethods(Arrays.asList(paymentFilter.getSelectedItem().toString()));
+                }
+                query.setRecurring(recurringFilter.isSelected() ? Boolean.TRUE : null);
+                query.setDateRange(parseOptionalDate(fromField.getText()), parseOptionalDate(toField.getText()));
+                query.setAmountRange(parseOptionalAmount(minAmountField.getText()),
+                        parseOptionalAmount(maxAmountField.getText()));
+                query.setText(textField.getText());
+
+                transactionTableModel.setQuery(query);
+                refreshFacets();
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(this, "Please enter valid values: " + ex.getMessage(),
+                        "Input Error", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+
+        clearButton.addActionListener(e -> {
+            typeFilter.setSelectedIndex(0);
+            categoryFilter.setSelectedIndex(0);
+            paymentFilter.setSelectedIndex(0);
+            recurringFilter.setSelected(false);
+            fromField.setText("");
+            toField.setText("");
+            minAmountField.setText("");
+            maxAmountField.setText("");
+            textField.setText("");
+            transactionTableModel.setQuery(new TransactionQuery());
+            refreshFacets();
+        });
+
+        JPanel filterPanel = new JPanel(new GridLayout(0, 1));
+        filterPanel.add(criteriaRow);
+        filterPanel.add(rangeRow);
+        filterPanel.add(facetRow);
+        refreshFacets();
+        return filterPanel;
+    }
+
+    private static String[] withAll(String[] choices) {
+        String[] items = new String[choices.length + 1];
+        items[0] = "All";
+        System.arraycopy(choices, 0, items, 1, choices.length);
+        return items;
+    }
+
+    private static LocalDate parseOptionalDate(String text) {
+        return text.trim().isEmpty() ? null : LocalDate.parse(text.trim());
+    }
+
+    private static Long parseOptionalAmount(String text) {
+        return text.trim().isEmpty() ? null : Money.parse(text);
+    }
+
+    /**
+     * Reloads the match counts for the table's current query
+     */
+    private void refreshFacets() {
+        TransactionQuery query = transactionTableModel.getQuery();
+        AsyncDatabaseManager.onEdt(asyncDb.submitLatest("facets", db -> db.getFacetCounts(query)),
+                facets -> facetLabel.setText(describeFacets(facets)));
+    }
+
+    private static String describeFacets(TransactionQuery.FacetCounts facets) {
+        StringBuilder text = new StringBuilder(String.format("%,d matching", facets.getTotal()));
+        for (java.util.Map<String, Integer> facet : Arrays.asList(facets.getTypes(), facets.getCategories(),
+                facets.getPaymentMethods())) {
+            text.append("  |  ");
+            int i = 0;
+            for (java.util.Map.Entry<String, Integer> entry : facet.entrySet()) {
+                if (entry.getKey() != null) {
+                    text.append(i++ == 0 ? "" : ", ").append(entry.getKey())
+                            .append(String.format(" %,d", entry.getValue()));
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Brings the views up to date after committed writes. The table applies
+     * the changes as deltas; the match counts and budgets are re-read.
+     */
+    private void onTransactionsChanged(java.util.List<ChangeEvent> changes) {
+        transactionTableModel.applyChanges(changes);
+        refreshFacets();
+        refreshBudgets();
+    }
+
+    /**
+     * Reloads the views after the whole ledger was replaced, e.g. by a restore
+     */
+    private void onTransactionsReset() {
+        transactionTableModel.refresh();
+        refreshFacets();
+        refreshBudgets();
+    }
+
+    /**
+     * Creates a panel listing each category's budget and spending for a month,
+     * with a form to set or remove budgets
+     */
+    private void createBudgetPanel() {
+        budgetPanel = new JPanel(new BorderLayout());
+
+        // Month navigation
+        JButton previousMonthButton = new JButton("<");
+        JButton nextMonthButton = new JButton(">");
+        budgetMonthLabel = new JLabel(budgetMonth.toString(), SwingConstants.CENTER);
+        previousMonthButton.addActionListener(e -> {
+            budgetMonth = budgetMonth.minusMonths(1);
+            refreshBudgets();
+        });
+        nextMonthButton.addActionListener(e -> {
+            budgetMonth = budgetMonth.plusMonths(1);
+            refreshBudgets();
+        });
+
+        JPanel monthPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        monthPanel.add(previousMonthButton);
+        monthPanel.add(budgetMonthLabel);
+        monthPanel.add(nextMonthButton);
+
+        budgetTableModel = new DefaultTableModel(new String[]{"Category", "Budget", "Spent", "Remaining", "Used"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable budgetTable = new JTable(budgetTableModel);
+
+        class ProgressRenderer extends JProgressBar implements TableCellRenderer {
+            private static final long serialVersionUID = 1L;
+
+            public ProgressRenderer() {
+                super(0, 100);
+                setStringPainted(true);
+            }
+
+            @Override
+            public Component getTableCellRendererComponent(JTable table, Object value,
+                                                           boolean isSelected, boolean hasFocus, int row, int column) {
+                int percent = (Integer) value;
+                setValue(Math.min(percent, 100));
+                setString(percent + "%");
+                setForeground(percent >= 100 ? new Color(220, 53, 69)
+                        : percent >= 80 ? new Color(255, 159, 64) : new Color(75, 192, 192));
+                return this;
+            }
+        }
+        budgetTable.getColumnModel().getColumn(4).setCellRenderer(new ProgressRenderer());
+
+        // Form for setting and removing budgets
+        JComboBox<String> categoryChoice = new JComboBox<>(CATEGORIES);
+        JTextField limitField = new JTextField(8);
+        JCheckBox thisMonthOnly = new JCheckBox("This month only");
+        JButton setButton = new JButton("Set Budget");
+        JButton removeButton = new JButton("Remove Selected");
+
+        setButton.addActionListener(e -> {
+            try {
+                Budget budget = new Budget(categoryChoice.getSelectedItem().toString(),
+                        thisMonthOnly.isSelected() ? budgetMonth : null, Money.parse(limitField.getText()));
+                AsyncDatabaseManager.onEdt(asyncDb.setBudget(budget), saved -> {
+                    limitField.setText("");
+                    refreshBudgets();
+                });
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(this, "Please enter valid values: " + ex.getMessage(),
+                        "Input Error", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+
+        removeButton.addActionListener(e -> {
+            int row = budgetTable.getSelectedRow();
+            if (row >= 0 && row < budgetStatuses.size()) {
+                Budget budget = budgetStatuses.get(row).getBudget();
+                AsyncDatabaseManager.onEdt(asyncDb.deleteBudget(budget.getCategory(), budget.getMonth()),
+                        deleted -> refreshBudgets());
+            }
+        });
+
+        JPanel formPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        formPanel.add(new JLabel("Category:"));
+        formPanel.add(categoryChoice);
+        formPanel.add(new JLabel("Monthly limit:"));
+        formPanel.add(limitField);
+        formPanel.add(thisMonthOnly);
+        formPanel.add(setButton);
+        formPanel.add(removeButton);
+
+        // Add components to panel
+        budgetPanel.add(monthPanel, BorderLayout.NORTH);
+        budgetPanel.add(new JScrollPane(budgetTable), BorderLayout.CENTER);
+        budgetPanel.add(formPanel, BorderLayout.SOUTH);
+        refreshBudgets();
+    }
+
+    /**
+     * Reloads the budget table for the selected month from the budget tracker's counters
+     */
+    private void refreshBudgets() {
+        YearMonth month = budgetMonth;
+        budgetMonthLabel.setText(month.toString());
+        AsyncDatabaseManager.onEdt(asyncDb.submitLatest("budgets", db -> db.getBudgetTracker().getStatus(month)),
+                statuses -> {
+                    budgetStatuses = statuses;
+                    budgetTableModel.setRowCount(0);
+                    for (BudgetTracker.Status status : statuses) {
+                        Budget budget = status.getBudget();
+                        budgetTableModel.addRow(new Object[]{
+                                budget.getCategory(),
+                                Money.format(budget.getLimitCents()) + (budget.getMonth() == null ? "" : " (this month)"),
+                                Money.format(status.getSpentCents()),
+                                Money.format(status.getRemainingCents()),
+                                status.getPercentUsed()
+                        });
+                    }
+                });
+    }
+
+    /**
+     * Shows a warning when spending in the current month crosses a budget threshold
+     */
+    private void onBudgetThreshold(BudgetTracker.ThresholdEvent event) {
+        refreshBudgets();
+        if (event.getMonth().equals(YearMonth.now())) {
+            JOptionPane.showMessageDialog(this, event.toString(), "Budget",
+                    event.getThreshold() >= 100 ? JOptionPane.WARNING_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
         }
     }
 
@@ -397,28 +701,29 @@ public class Savr extends JFrame {
         // Create a tabbed pane for different graphs
         JTabbedPane graphsTabbedPane = new JTabbedPane();
 
-        // Create expense by category chart
-        JPanel categoryChartPanel = createCategoryPieChart();
-        graphsTabbedPane.addTab("Expenses by Category", categoryChartPanel);
-
-        // Create payment method chart (Credit vs Debit vs Cash)
-        JPanel paymentMethodPanel = createPaymentMethodChart();
-        graphsTabbedPane.addTab("Payment Methods", paymentMethodPanel);
-
-        // Create spending trend chart
-        JPanel spendingTrendPanel = createSpendingTrendChart();
-        graphsTabbedPane.addTab("Monthly Trend", spendingTrendPanel);
+        // Charts are filled in once their data has loaded in the background
+        graphsTabbedPane.addTab("Expenses by Category", createLoadingPanel());
+        graphsTabbedPane.addTab("Payment Methods", createLoadingPanel());
+        graphsTabbedPane.addTab("Monthly Trend", createLoadingPanel());
+        refreshGraphs(graphsTabbedPane);
 
         // Add refresh button
         JButton refreshButton = new JButton("Refresh Graphs");
-        refreshButton.addActionListener(e -> {
-            graphsTabbedPane.setComponentAt(0, createCategoryPieChart());
-            graphsTabbedPane.setComponentAt(1, createPaymentMethodChart());
-            graphsTabbedPane.setComponentAt(2, createSpendingTrendChart());
-            graphsTabbedPane.repaint();
-        });
+        refreshButton.addActionListener(e -> refreshGraphs(graphsTabbedPane));
+
+        // Compares the cached chart totals with the database on demand
+        JButton verifyButton = new JButton("Check Totals");
+        verifyButton.addActionListener(e -> AsyncDatabaseManager.onEdt(
+                asyncDb.submit(DatabaseManager::verifyAggregateCache), consistent -> {
+                    JOptionPane.showMessageDialog(graphsPanel,
+                            consistent ? "Chart totals match the database."
+                                    : "Chart totals were out of date and have been rebuilt from the transactions.",
+                            "Check Totals", JOptionPane.INFORMATION_MESSAGE);
+                    refreshGraphs(graphsTabbedPane);
+                }));
 
         JPanel controlPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        controlPanel.add(verifyButton);
         controlPanel.add(refreshButton);
 
         // Add components to panel
@@ -428,107 +733,82 @@ public class Savr extends JFrame {
     }
 
     /**
-     * Creates a pie chart showing expenses by category
+     * Loads chart data in the background and swaps the charts in on the EDT.
+     * A newer refresh cancels one that is still waiting.
      */
-    private JPanel createCategoryPieChart() {
-        // Fetch transactions data from database and organize by category
-        ArrayList<Transaction> transactions = (ArrayList<Transaction>) dbManager.getAllTransactions();
-
-        // Calculate totals by category (only expenses)
-        final java.util.Map<String, Double> categoryTotals = new java.util.HashMap<>();
-        for (Transaction t : transactions) {
-            // Skip income transactions
-            if (t.isIncome()) {
-                continue;
-            }
-
-            String category = t.getCategory();
-            double amount = t.getAmount();
+    private void refreshGraphs(JTabbedPane graphsTabbedPane) {
+        AsyncDatabaseManager.onEdt(asyncDb.submitLatest("graphs", ChartData::load),
+                data -> {
+                    graphsTabbedPane.setComponentAt(0, createCategoryPieChart(data.categoryTotals));
+                    graphsTabbedPane.setComponentAt(1, createPaymentMethodChart(data.paymentMethodTotals));
+                    graphsTabbedPane.setComponentAt(2, createSpendingTrendChart(data.trend));
+                    graphsTabbedPane.repaint();
+                });
+    }
 
-            if (categoryTotals.containsKey(category)) {
-                categoryTotals.put(category, categoryTotals.get(category) + amount);
-            } else {
-                categoryTotals.put(category, amount);
-            }
+    /**
+     * Aggregated totals behind the three charts, read from the aggregate cache
+     */
+    private static class ChartData {
+        private java.util.Map<String, Long> categoryTotals;
+        private java.util.Map<String, Long> paymentMethodTotals;
+        private TrendSeries trend;
+
+        private static ChartData load(DatabaseManager db) {
+            AggregateCache cache = db.getAggregateCache();
+            ChartData data = new ChartData();
+            data.categoryTotals = cache.getCategoryTotals(false);
+            data.paymentMethodTotals = cache.getPaymentMethodTotals(false);
+            // Bucketed here, off the EDT, so panning and zooming only slice ready-made buckets
+            data.trend = new TrendSeries(cache.getDailyTotals(true), cache.getDailyTotals(false));
+            return data;
         }
+    }
 
-        // Create colors for each category
-        java.util.Map<String, Color> categoryColors = new java.util.HashMap<>();
-        categoryColors.put("Food", new Color(255, 99, 132));
-        categoryColors.put("Entertainment", new Color(54, 162, 235));
-        categoryColors.put("Housing", new Color(255, 206, 86));
-        categoryColors.put("Transportation", new Color(75, 192, 192));
-        categoryColors.put("Savings", new Color(153, 102, 255));
-        categoryColors.put("Other", new Color(255, 159, 64));
+    /**
+     * Creates a placeholder shown while chart data is loading
+     */
+    private JPanel createLoadingPanel() {
+        JPanel loadingPanel = new JPanel(new BorderLayout());
+        loadingPanel.add(new JLabel("Loading...", SwingConstants.CENTER), BorderLayout.CENTER);
+        return loadingPanel;
+    }
 
+    /**
+     * Creates a pie chart showing expenses by category
+     */
+    private JPanel createCategoryPieChart(java.util.Map<String, Long> categoryTotals) {
         // Create pie chart panel
         JPanel pieChartPanel = new JPanel(new BorderLayout());
 
-        // Create custom pie chart
-        JPanel chartPanel = new JPanel() {
-            @Override
-            protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
-                Graphics2D g2d = (Graphics2D) g;
-                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-                int width = getWidth();
-                int height = getHeight();
-                int x = width / 2;
-                int y = height / 2;
-                int radius = Math.min(width, height) / 3;
-
-                // Calculate total for percentages
-                double total = categoryTotals.values().stream().mapToDouble(Double::doubleValue).sum();
-
-                // Draw pie slices
-                double currentAngle = 0;
-                for (String category : categoryTotals.keySet()) {
-                    double value = categoryTotals.get(category);
-                    double sliceAngle = (value / total) * 360;
-
-                    // Get color for this category
-                    Color color = categoryColors.getOrDefault(category, new Color(100, 100, 100));
-
-                    g2d.setColor(color);
-                    g2d.fillArc(x - radius, y - radius, radius * 2, radius * 2,
-                            (int) currentAngle, (int) sliceAngle);
-
-                    // Calculate text position
-                    double middleAngle = Math.toRadians(currentAngle + sliceAngle / 2);
-                    int labelX = (int) (x + (radius * 1.3) * Math.cos(middleAngle));
-                    int labelY = (int) (y + (radius * 1.3) * Math.sin(middleAngle));
-
-                    // Draw percentage
-                    String percent = String.format("%.1f%%", (value / total * 100));
-                    g2d.setColor(Color.BLACK);
-                    g2d.drawString(category + ": " + percent, labelX, labelY);
-
-                    currentAngle += sliceAngle;
-                }
+        // Slices in drawing order, with the total for percentages (in cents, like the slices)
+        String[] categories = categoryTotals.keySet().toArray(new String[0]);
+        long[] values = new long[categories.length];
+        long total = 0;
+        for (int i = 0; i < categories.length; i++) {
+            values[i] = categoryTotals.get(categories[i]);
+            total += values[i];
+        }
+        long categoryTotal = total;
 
-                // If no data available
-                if (categoryTotals.isEmpty()) {
-                    g2d.setColor(Color.GRAY);
-                    g2d.drawString("No expense data available", x - 70, y);
-                }
-            }
-        };
+        // Create custom pie chart
+        ChartPanel chartPanel = new ChartPanel((g2d, width, height) ->
+                renderCategoryPie(g2d, width, height, categories, values, categoryTotal));
 
         // Create legend panel
         JPanel legendPanel = new JPanel(new GridLayout(0, 1));
         legendPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
-        for (String category : categoryColors.keySet()) {
+        for (String category : CATEGORY_COLORS.keySet()) {
             if (categoryTotals.containsKey(category)) {
                 JPanel legendItem = new JPanel(new FlowLayout(FlowLayout.LEFT));
 
                 JPanel colorBox = new JPanel();
-                colorBox.setBackground(categoryColors.get(category));
+                colorBox.setBackground(CATEGORY_COLORS.get(category));
                 colorBox.setPreferredSize(new Dimension(15, 15));
 
-                double amount = categoryTotals.getOrDefault(category, 0.0);
-                JLabel categoryLabel = new JLabel(category + ": $" + String.format("%.2f", amount));
+                long amountCents = categoryTotals.getOrDefault(category, 0L);
+                JLabel categoryLabel = new JLabel(category + ": " + Money.format(amountCents));
 
                 legendItem.add(colorBox);
                 legendItem.add(categoryLabel);
@@ -542,127 +822,60 @@ public class Savr extends JFrame {
         return pieChartPanel;
     }
 
+    /**
+     * Draws the category pie chart; runs on the chart render thread
+     */
+    private static void renderCategoryPie(Graphics2D g2d, int width, int height,
+                                          String[] categories, long[] values, long total) {
+        int x = width / 2;
+        int y = height / 2;
+        int radius = Math.min(width, height) / 3;
+
+        // Draw pie slices
+        double currentAngle = 0;
+        for (int i = 0; i < categories.length; i++) {
+            double value = values[i];
+            double sliceAngle = (value / total) * 360;
+
+            g2d.setColor(CATEGORY_COLORS.getOrDefault(categories[i], OTHER_CATEGORY_COLOR));
+            g2d.fillArc(x - radius, y - radius, radius * 2, radius * 2,
+                    (int) currentAngle, (int) sliceAngle);
+
+            // Calculate text position
+            double middleAngle = Math.toRadians(currentAngle + sliceAngle / 2);
+            int labelX = (int) (x + (radius * 1.3) * Math.cos(middleAngle));
+            int labelY = (int) (y + (radius * 1.3) * Math.sin(middleAngle));
+
+            // Draw percentage
+            String percent = String.format("%.1f%%", (value / total * 100));
+            g2d.setColor(Color.BLACK);
+            g2d.drawString(categories[i] + ": " + percent, labelX, labelY);
+
+            currentAngle += sliceAngle;
+        }
+
+        // If no data available
+        if (categories.length == 0) {
+            g2d.setColor(Color.GRAY);
+            g2d.drawString("No expense data available", x - 70, y);
+        }
+    }
+
     /**
      * Creates a bar chart comparing spending by payment method (Credit vs Debit vs Cash)
      */
-    private JPanel createPaymentMethodChart() {
+    private JPanel createPaymentMethodChart(java.util.Map<String, Long> paymentMethodTotals) {
         // Create panel for payment method chart
         JPanel paymentMethodChartPanel = new JPanel(new BorderLayout());
 
-        // Fetch transactions data from database
-        ArrayList<Transaction> transactions = (ArrayList<Transaction>) dbManager.getAllTransactions();
-
-        // Calculate totals by payment method (only considering expenses)
-        // Use wrapper objects to hold mutable values
-        final double[] creditCardTotal = {0};
-        final double[] debitCardTotal = {0};
-        final double[] cashTotal = {0};
-
-        for (Transaction t : transactions) {
-            // Skip income transactions if you want to only show expenses
-            if (t.isIncome()) {
-                continue;
-            }
-
-            String paymentMethod = t.getPaymentMethod();
-            double amount = t.getAmount();
-
-            if (paymentMethod.equals("Credit Card")) {
-                creditCardTotal[0] += amount;
-            } else if (paymentMethod.equals("Debit Card")) {
-                debitCardTotal[0] += amount;
-            } else if (paymentMethod.equals("Cash")) {
-                cashTotal[0] += amount;
-            }
-        }
+        // Expense totals by payment method, in cents
+        long creditCardTotal = paymentMethodTotals.getOrDefault("Credit Card", 0L);
+        long debitCardTotal = paymentMethodTotals.getOrDefault("Debit Card", 0L);
+        long cashTotal = paymentMethodTotals.getOrDefault("Cash", 0L);
 
         // Create custom bar chart
-        JPanel chartPanel = new JPanel() {
-            @Override
-            protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
-                Graphics2D g2d = (Graphics2D) g;
-                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-                int width = getWidth();
-                int height = getHeight();
-                int barWidth = 80;
-                int bottomMargin = 50;
-                int leftMargin = 60;
-
-                // Draw axes
-                g2d.setColor(Color.BLACK);
-                g2d.drawLine(leftMargin, height - bottomMargin, width - 20, height - bottomMargin); // X-axis
-                g2d.drawLine(leftMargin, 20, leftMargin, height - bottomMargin); // Y-axis
-
-                // Calculate scale based on maximum value
-                double maxValue = Math.max(Math.max(creditCardTotal[0], debitCardTotal[0]), cashTotal[0]);
-                if (maxValue == 0) maxValue = 100; // Default if no data
-                double scale = (height - bottomMargin - 40) / maxValue;
-
-                // Bar spacing
-                int spacing = 40;
-                int startX = leftMargin + 60;
-
-                // Draw Credit Card bar
-                int barHeight1 = (int) (creditCardTotal[0] * scale);
-                g2d.setColor(new Color(255, 99, 132)); // Pink-red for credit card
-                g2d.fillRect(startX, height - bottomMargin - barHeight1, barWidth, barHeight1);
-                g2d.setColor(Color.BLACK);
-                g2d.drawRect(startX, height - bottomMargin - barHeight1, barWidth, barHeight1);
-
-                // Draw Credit Card label and value
-                g2d.drawString("Credit Card", startX + barWidth/2 - 30, height - bottomMargin + 20);
-                g2d.drawString("$" + String.format("%.2f", creditCardTotal[0]), startX + barWidth/2 - 30,
-                        height - bottomMargin - barHeight1 - 5);
-
-                // Draw Debit Card bar
-                int x2 = startX + barWidth + spacing;
-                int barHeight2 = (int) (debitCardTotal[0] * scale);
-                g2d.setColor(new Color(54, 162, 235)); // Blue for debit card
-                g2d.fillRect(x2, height - bottomMargin - barHeight2, barWidth, barHeight2);
-                g2d.setColor(Color.BLACK);
-                g2d.drawRect(x2, height - bottomMargin - barHeight2, barWidth, barHeight2);
-
-                // Draw Debit Card label and value
-                g2d.drawString("Debit Card", x2 + barWidth/2 - 28, height - bottomMargin + 20);
-                g2d.drawString("$" + String.format("%.2f", debitCardTotal[0]), x2 + barWidth/2 - 30,
-                        height - bottomMargin - barHeight2 - 5);
-
-                // Draw Cash bar
-                int x3 = x2 + barWidth + spacing;
-                int barHeight3 = (int) (cashTotal[0] * scale);
-                g2d.setColor(new Color(75, 192, 192)); // Green-blue for cash
-                g2d.fillRect(x3, height - bottomMargin - barHeight3, barWidth, barHeight3);
-                g2d.setColor(Color.BLACK);
-                g2d.drawRect(x3, height - bottomMargin - barHeight3, barWidth, barHeight3);
-
-                // Draw Cash label and value
-                g2d.drawString("Cash", x3 + barWidth/2 - 15, height - bottomMargin + 20);
-                g2d.drawString("$" + String.format("%.2f", cashTotal[0]), x3 + barWidth/2 - 30,
-                        height - bottomMargin - barHeight3 - 5);
-
-                // Draw Y-axis labels
-                g2d.setColor(Color.BLACK);
-                int numYLabels = 5;
-                for (int i = 0; i <= numYLabels; i++) {
-                    double value = maxValue * i / numYLabels;
-                    int y = height - bottomMargin - (int)(value * scale);
-                    g2d.drawLine(leftMargin - 5, y, leftMargin, y);
-                    g2d.drawString(String.format("$%.0f", value), leftMargin - 50, y + 5);
-                }
-
-                // Draw title
-                g2d.setFont(new Font("Arial", Font.BOLD, 16));
-                g2d.drawString("Expenses by Payment Method", width/2 - 120, 20);
-
-                // Calculate and display total spending
-                double totalSpending = creditCardTotal[0] + debitCardTotal[0] + cashTotal[0];
-                g2d.setFont(new Font("Arial", Font.BOLD, 14));
-                g2d.setColor(Color.BLACK);
-                g2d.drawString("Total Spending: $" + String.format("%.2f", totalSpending), width/2 - 80, height - 15);
-            }
-        };
+        ChartPanel chartPanel = new ChartPanel((g2d, width, height) ->
+                renderPaymentMethodChart(g2d, width, height, creditCardTotal, debitCardTotal, cashTotal));
 
         paymentMethodChartPanel.add(chartPanel, BorderLayout.CENTER);
 
@@ -670,208 +883,332 @@ public class Savr extends JFrame {
     }
 
     /**
-     * Creates a line chart showing spending trends over time
+     * Draws the payment method bar chart; runs on the chart render thread
      */
-    private JPanel createSpendingTrendChart() {
-        // Fetch transactions data from database
-        ArrayList<Transaction> transactions = (ArrayList<Transaction>) dbManager.getAllTransactions();
-
-        // Group transactions by month
-        final java.util.Map<String, Double> monthlyExpenses = new java.util.TreeMap<>();
-        final java.util.Map<String, Double> monthlyIncome = new java.util.TreeMap<>();
-
-        for (Transaction t : transactions) {
-            LocalDate date = t.getDate();
-            String month = date.getYear() + "-" + String.format("%02d", date.getMonthValue());
-
-            if (t.isIncome()) {
-                if (monthlyIncome.containsKey(month)) {
-                    monthlyIncome.put(month, monthlyIncome.get(month) + t.getAmount());
-                } else {
-                    monthlyIncome.put(month, t.getAmount());
-                }
-            } else {
-                if (monthlyExpenses.containsKey(month)) {
-                    monthlyExpenses.put(month, monthlyExpenses.get(month) + t.getAmount());
-                } else {
-                    monthlyExpenses.put(month, t.getAmount());
-                }
-            }
+    private static void renderPaymentMethodChart(Graphics2D g2d, int width, int height,
+                                                 long creditCardTotal, long debitCardTotal, long cashTotal) {
+        int barWidth = 80;
+        int bottomMargin = 50;
+        int leftMargin = 60;
+
+        // Draw axes
+        g2d.setColor(Color.BLACK);
+        g2d.drawLine(leftMargin, height - bottomMargin, width - 20, height - bottomMargin); // X-axis
+        g2d.drawLine(leftMargin, 20, leftMargin, height - bottomMargin); // Y-axis
+
+        // Calculate scale based on maximum value (dollars, for drawing only)
+        double maxValue = Money.toDollars(Math.max(Math.max(creditCardTotal, debitCardTotal), cashTotal));
+        if (maxValue == 0) maxValue = 100; // Default if no data
+        double scale = (height - bottomMargin - 40) / maxValue;
+
+        // Bar spacing
+        int spacing = 40;
+        int startX = leftMargin + 60;
+
+        // Draw Credit Card bar
+        int barHeight1 = (int) (Money.toDollars(creditCardTotal) * scale);
+        g2d.setColor(CREDIT_CARD_COLOR);
+        g2d.fillRect(startX, height - bottomMargin - barHeight1, barWidth, barHeight1);
+        g2d.setColor(Color.BLACK);
+        g2d.drawRect(startX, height - bottomMargin - barHeight1, barWidth, barHeight1);
+
+        // Draw Credit Card label and value
+        g2d.drawString("Credit Card", startX + barWidth/2 - 30, height - bottomMargin + 20);
+        g2d.drawString(Money.format(creditCardTotal), startX + barWidth/2 - 30,
+                height - bottomMargin - barHeight1 - 5);
+
+        // Draw Debit Card bar
+        int x2 = startX + barWidth + spacing;
+        int barHeight2 = (int) (Money.toDollars(debitCardTotal) * scale);
+        g2d.setColor(DEBIT_CARD_COLOR);
+        g2d.fillRect(x2, height - bottomMargin - barHeight2, barWidth, barHeight2);
+        g2d.setColor(Color.BLACK);
+        g2d.drawRect(x2, height - bottomMargin - barHeight2, barWidth, barHeight2);
+
+        // Draw Debit Card label and value
+        g2d.drawString("Debit Card", x2 + barWidth/2 - 28, height - bottomMargin + 20);
+        g2d.drawString(Money.format(debitCardTotal), x2 + barWidth/2 - 30,
+                height - bottomMargin - barHeight2 - 5);
+
+        // Draw Cash bar
+        int x3 = x2 + barWidth + spacing;
+        int barHeight3 = (int) (Money.toDollars(cashTotal) * scale);
+        g2d.setColor(CASH_COLOR);
+        g2d.fillRect(x3, height - bottomMargin - barHeight3, barWidth, barHeight3);
+        g2d.setColor(Color.BLACK);
+        g2d.drawRect(x3, height - bottomMargin - barHeight3, barWidth, barHeight3);
+
+        // Draw Cash label and value
+        g2d.drawString("Cash", x3 + barWidth/2 - 15, height - bottomMargin + 20);
+        g2d.drawString(Money.format(cashTotal), x3 + barWidth/2 - 30,
+                height - bottomMargin - barHeight3 - 5);
+
+        // Draw Y-axis labels
+        g2d.setColor(Color.BLACK);
+        int numYLabels = 5;
+        for (int i = 0; i <= numYLabels; i++) {
+            double value = maxValue * i / numYLabels;
+            int y = height - bottomMargin - (int)(value * scale);
+            g2d.drawLine(leftMargin - 5, y, leftMargin, y);
+            g2d.drawString(String.format("$%.0f", value), leftMargin - 50, y + 5);
         }
 
-        // Ensure we have same set of months for both maps
-        java.util.Set<String> allMonths = new java.util.HashSet<>();
-        allMonths.addAll(monthlyExpenses.keySet());
-        allMonths.addAll(monthlyIncome.keySet());
+        // Draw title
+        g2d.setFont(CHART_TITLE_FONT);
+        g2d.drawString("Expenses by Payment Method", width/2 - 120, 20);
 
-        for (String month : allMonths) {
-            if (!monthlyExpenses.containsKey(month)) {
-                monthlyExpenses.put(month, 0.0);
-            }
-            if (!monthlyIncome.containsKey(month)) {
-                monthlyIncome.put(month, 0.0);
-            }
-        }
+        // Calculate and display total spending
+        long totalSpending = creditCardTotal + debitCardTotal + cashTotal;
+        g2d.setFont(CHART_TOTAL_FONT);
+        g2d.setColor(Color.BLACK);
+        g2d.drawString("Total Spending: " + Money.format(totalSpending), width/2 - 80, height - 15);
+    }
+
+    /**
+     * Creates a line chart showing income and expense trends over time. The
+     * bucket size (day to year) follows the visible range; drag to pan,
+     * scroll to zoom and double-click to show the whole history again.
+     */
+    private JPanel createSpendingTrendChart(TrendSeries series) {
+        // Visible range in epoch days, replaced (never modified) on the EDT and read by the render thread
+        java.util.concurrent.atomic.AtomicReference<double[]> view =
+                new java.util.concurrent.atomic.AtomicReference<>(fullTrendView(series));
 
         // Create line chart panel
         JPanel lineChartPanel = new JPanel(new BorderLayout());
 
         // Create custom line chart
-        JPanel chartPanel = new JPanel() {
+        ChartPanel chartPanel = new ChartPanel((g2d, width, height) ->
+                renderSpendingTrend(g2d, width, height, series, view.get()));
+
+        MouseAdapter navigation = new MouseAdapter() {
+            private int dragStartX;
+            private double[] dragStartView;
+
             @Override
-            protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
-                Graphics2D g2d = (Graphics2D) g;
-                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-                int width = getWidth();
-                int height = getHeight();
-                int bottomMargin = 70;
-                int leftMargin = 60;
-                int rightMargin = 40;
-                int topMargin = 40;
-
-                // Available chart area
-                int chartWidth = width - leftMargin - rightMargin;
-                int chartHeight = height - bottomMargin - topMargin;
-
-                // Draw axes
-                g2d.setColor(Color.BLACK);
-                g2d.drawLine(leftMargin, height - bottomMargin, width - rightMargin, height - bottomMargin); // X-axis
-                g2d.drawLine(leftMargin, topMargin, leftMargin, height - bottomMargin); // Y-axis
-
-                // If no data available
-                if (monthlyExpenses.isEmpty() && monthlyIncome.isEmpty()) {
-                    g2d.setColor(Color.GRAY);
-                    g2d.drawString("No data available for trend analysis", width/2 - 100, height/2);
+            public void mousePressed(MouseEvent e) {
+                dragStartX = e.getX();
+                dragStartView = view.get();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (dragStartView == null || series.isEmpty()) {
                     return;
                 }
+                double span = dragStartView[1] - dragStartView[0];
+                double shift = -(e.getX() - dragStartX) * span / trendChartWidth(chartPanel.getWidth());
+                setView(clampTrendView(series, dragStartView[0] + shift, dragStartView[1] + shift));
+            }
 
-                // Sort months
-                java.util.List<String> sortedMonths = new java.util.ArrayList<>(monthlyExpenses.keySet());
-                java.util.Collections.sort(sortedMonths);
-
-                // Find maximum value for scale
-                double maxValue = 0;
-                for (String month : sortedMonths) {
-                    maxValue = Math.max(maxValue, Math.max(monthlyExpenses.get(month), monthlyIncome.get(month)));
-                }
-                maxValue = maxValue == 0 ? 100 : maxValue * 1.1; // Add 10% margin
-
-                // Calculate scale
-                double xScale = (double) chartWidth / (sortedMonths.size() - 1 > 0 ? sortedMonths.size() - 1 : 1);
-                double yScale = (double) chartHeight / maxValue;
-
-                // Draw X-axis labels (months)
-                g2d.setColor(Color.BLACK);
-                for (int i = 0; i < sortedMonths.size(); i++) {
-                    int x = leftMargin + (int)(i * xScale);
-                    g2d.drawLine(x, height - bottomMargin, x, height - bottomMargin + 5);
-
-                    // Rotate month labels for better readability
-                    AffineTransform originalTransform = g2d.getTransform();
-                    g2d.rotate(Math.PI / 4, x, height - bottomMargin + 10);
-                    g2d.drawString(sortedMonths.get(i), x, height - bottomMargin + 10);
-                    g2d.setTransform(originalTransform);
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                if (series.isEmpty()) {
+                    return;
                 }
+                // Zoom around the day under the pointer, so it stays put
+                double[] current = view.get();
+                double span = current[1] - current[0];
+                double anchor = current[0] + (e.getX() - TREND_LEFT_MARGIN) * span
+                        / trendChartWidth(chartPanel.getWidth());
+                double factor = Math.pow(1.2, e.getPreciseWheelRotation());
+                setView(clampTrendView(series, anchor - (anchor - current[0]) * factor,
+                        anchor + (current[1] - anchor) * factor));
+            }
 
-                // Draw Y-axis labels
-                g2d.setColor(Color.BLACK);
-                int numYLabels = 5;
-                for (int i = 0; i <= numYLabels; i++) {
-                    double value = maxValue * i / numYLabels;
-                    int y = height - bottomMargin - (int)(value * yScale);
-                    g2d.drawLine(leftMargin - 5, y, leftMargin, y);
-                    g2d.drawString(String.format("$%.0f", value), leftMargin - 50, y + 5);
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    setView(fullTrendView(series));
                 }
+            }
 
-                // Draw expenses line
-                g2d.setColor(new Color(255, 99, 132));
-                g2d.setStroke(new BasicStroke(2f));
+            private void setView(double[] newView) {
+                view.set(newView);
+                chartPanel.invalidateImage();
+            }
+        };
+        chartPanel.addMouseListener(navigation);
+        chartPanel.addMouseMotionListener(navigation);
+        chartPanel.addMouseWheelListener(navigation);
 
-                int prevX = 0, prevY = 0;
-                for (int i = 0; i < sortedMonths.size(); i++) {
-                    String month = sortedMonths.get(i);
-                    double value = monthlyExpenses.get(month);
+        lineChartPanel.add(chartPanel, BorderLayout.CENTER);
+        lineChartPanel.add(new JLabel("Drag to pan, scroll to zoom, double-click to show all",
+                SwingConstants.CENTER), BorderLayout.SOUTH);
 
-                    int x = leftMargin + (int)(i * xScale);
-                    int y = height - bottomMargin - (int)(value * yScale);
+        return lineChartPanel;
+    }
 
-                    // Draw point
-                    g2d.fillOval(x - 4, y - 4, 8, 8);
+    /**
+     * The trend chart view covering the whole history
+     */
+    private static double[] fullTrendView(TrendSeries series) {
+        return new double[]{series.getFirstDay(),
+                Math.max(series.getEndDay(), series.getFirstDay() + TREND_MIN_VIEW_DAYS)};
+    }
 
-                    // Draw connecting line (skip first point)
-                    if (i > 0) {
-                        g2d.drawLine(prevX, prevY, x, y);
-                    }
+    /**
+     * Limits a trend chart view to the history and to at least TREND_MIN_VIEW_DAYS
+     */
+    private static double[] clampTrendView(TrendSeries series, double start, double end) {
+        double[] full = fullTrendView(series);
+        double span = Math.min(Math.max(end - start, TREND_MIN_VIEW_DAYS), full[1] - full[0]);
+        double clampedStart = Math.max(full[0], Math.min(start, full[1] - span));
+        return new double[]{clampedStart, clampedStart + span};
+    }
 
-                    prevX = x;
-                    prevY = y;
-                }
+    private static int trendChartWidth(int width) {
+        return Math.max(1, width - TREND_LEFT_MARGIN - TREND_RIGHT_MARGIN);
+    }
 
-                // Draw income line
-                g2d.setColor(new Color(75, 192, 192));
-                g2d.setStroke(new BasicStroke(2f));
+    /**
+     * Draws the trend line chart for a view; runs on the chart render thread.
+     * Only the buckets in view are read, at a level that leaves each at least
+     * TREND_MIN_BUCKET_PIXELS wide, and dense lines are thinned with LTTB,
+     * so the cost depends on the chart width rather than the ledger length.
+     */
+    private static void renderSpendingTrend(Graphics2D g2d, int width, int height, TrendSeries series,
+                                            double[] view) {
+        int bottomMargin = 70;
+        int topMargin = 40;
+
+        // Available chart area
+        int chartWidth = trendChartWidth(width);
+        int chartHeight = height - bottomMargin - topMargin;
+        int baseline = height - bottomMargin;
+
+        // Draw axes
+        g2d.setColor(Color.BLACK);
+        g2d.drawLine(TREND_LEFT_MARGIN, baseline, width - TREND_RIGHT_MARGIN, baseline); // X-axis
+        g2d.drawLine(TREND_LEFT_MARGIN, topMargin, TREND_LEFT_MARGIN, baseline); // Y-axis
+
+        // If no data available
+        if (series.isEmpty()) {
+            g2d.setColor(Color.GRAY);
+            g2d.drawString("No data available for trend analysis", width/2 - 100, height/2);
+            return;
+        }
 
-                prevX = 0;
-                prevY = 0;
-                for (int i = 0; i < sortedMonths.size(); i++) {
-                    String month = sortedMonths.get(i);
-                    double value = monthlyIncome.get(month);
+        TrendSeries.Level level = TrendSeries.levelFor(view[0], view[1],
+                Math.max(1, chartWidth / TREND_MIN_BUCKET_PIXELS));
+        TrendSeries.Slice slice = series.slice(level, view[0], view[1]);
+        double[] centers = slice.getCenterDays();
 
-                    int x = leftMargin + (int)(i * xScale);
-                    int y = height - bottomMargin - (int)(value * yScale);
+        // Find maximum value for scale (dollars, for drawing only)
+        double maxValue = 0;
+        for (int i = 0; i < slice.size(); i++) {
+            maxValue = Math.max(maxValue,
+                    Money.toDollars(Math.max(slice.getExpenses()[i], slice.getIncome()[i])));
+        }
+        maxValue = maxValue == 0 ? 100 : maxValue * 1.1; // Add 10% margin
+
+        // Calculate scale
+        double xScale = chartWidth / (view[1] - view[0]);
+        double yScale = (double) chartHeight / maxValue;
+
+        // Draw X-axis labels, every step-th bucket so they do not overlap; rotated for better
+        // readability with a rotated font rather than swapping the whole transform per label
+        Font labelFont = g2d.getFont();
+        g2d.setFont(labelFont.deriveFont(AffineTransform.getRotateInstance(Math.PI / 4)));
+        int step = Math.max(1, (int) Math.ceil(TREND_LABEL_PIXELS * slice.size() / (double) chartWidth));
+        for (int i = 0; i < slice.size(); i += step) {
+            int x = TREND_LEFT_MARGIN + (int) ((centers[i] - view[0]) * xScale);
+            if (x < TREND_LEFT_MARGIN || x > TREND_LEFT_MARGIN + chartWidth) {
+                continue;
+            }
+            g2d.drawLine(x, baseline, x, baseline + 5);
+            g2d.drawString(slice.getLabels()[i], x, baseline + 10);
+        }
+        g2d.setFont(labelFont);
+
+        // Draw Y-axis labels
+        int numYLabels = 5;
+        for (int i = 0; i <= numYLabels; i++) {
+            double value = maxValue * i / numYLabels;
+            int y = baseline - (int)(value * yScale);
+            g2d.drawLine(TREND_LEFT_MARGIN - 5, y, TREND_LEFT_MARGIN, y);
+            g2d.drawString(String.format("$%.0f", value), TREND_LEFT_MARGIN - 50, y + 5);
+        }
 
-                    // Draw point
-                    g2d.fillOval(x - 4, y - 4, 8, 8);
+        // Draw expenses and income lines, clipped to the chart area since edge buckets stick out
+        Shape clip = g2d.getClip();
+        g2d.clipRect(TREND_LEFT_MARGIN, topMargin - 5, chartWidth + 1, chartHeight + 10);
+        g2d.setStroke(TREND_LINE_STROKE);
+        int maxPoints = Math.max(3, chartWidth / TREND_MIN_POINT_PIXELS);
+        drawTrendLine(g2d, centers, slice.getExpenses(), EXPENSE_COLOR, view[0], xScale, baseline, yScale,
+                maxPoints);
+        drawTrendLine(g2d, centers, slice.getIncome(), INCOME_COLOR, view[0], xScale, baseline, yScale,
+                maxPoints);
+        g2d.setClip(clip);
+
+        // Draw title
+        g2d.setColor(Color.BLACK);
+        g2d.setFont(CHART_TITLE_FONT);
+        g2d.drawString(level.getTitle() + " Financial Trend", width/2 - 100, 20);
+
+        // Draw legend
+        int legendX = width - TREND_RIGHT_MARGIN - 180;
+        int legendY = topMargin + 10;
+
+        // Expenses legend
+        g2d.setColor(EXPENSE_COLOR);
+        g2d.fillRect(legendX, legendY, 15, 15);
+        g2d.setColor(Color.BLACK);
+        g2d.drawRect(legendX, legendY, 15, 15);
+        g2d.drawString("Expenses", legendX + 20, legendY + 12);
+
+        // Income legend
+        g2d.setColor(INCOME_COLOR);
+        g2d.fillRect(legendX, legendY + 25, 15, 15);
+        g2d.setColor(Color.BLACK);
+        g2d.drawRect(legendX, legendY + 25, 15, 15);
+        g2d.drawString("Income", legendX + 20, legendY + 37);
+    }
 
-                    // Draw connecting line (skip first point)
-                    if (i > 0) {
-                        g2d.drawLine(prevX, prevY, x, y);
-                    }
+    /**
+     * Draws one series of the trend chart as a line, downsampled to at most
+     * maxPoints points, with a marker on each point when they are spread out
+     *
+     * @param centers Bucket midpoints in epoch days
+     * @param values Bucket totals in cents
+     * @param viewStart First day in view
+     * @param baseline Y coordinate of the x-axis
+     */
+    private static void drawTrendLine(Graphics2D g2d, double[] centers, long[] values, Color color,
+                                      double viewStart, double xScale, int baseline, double yScale,
+                                      int maxPoints) {
+        int[] kept = TrendSeries.downsample(centers, values, maxPoints);
+        if (kept.length == 0) {
+            return;
+        }
+        int[] xs = new int[kept.length];
+        int[] ys = new int[kept.length];
+        for (int i = 0; i < kept.length; i++) {
+            xs[i] = TREND_LEFT_MARGIN + (int) ((centers[kept[i]] - viewStart) * xScale);
+            ys[i] = baseline - (int) (Money.toDollars(values[kept[i]]) * yScale);
+        }
 
-                    prevX = x;
-                    prevY = y;
-                }
+        g2d.setColor(color);
+        g2d.drawPolyline(xs, ys, kept.length);
 
-                // Draw title
-                g2d.setColor(Color.BLACK);
-                g2d.setFont(new Font("Arial", Font.BOLD, 16));
-                g2d.drawString("Monthly Financial Trend", width/2 - 100, 20);
-
-                // Draw legend
-                int legendX = width - rightMargin - 180;
-                int legendY = topMargin + 10;
-
-                // Expenses legend
-                g2d.setColor(new Color(255, 99, 132));
-                g2d.fillRect(legendX, legendY, 15, 15);
-                g2d.setColor(Color.BLACK);
-                g2d.drawRect(legendX, legendY, 15, 15);
-                g2d.drawString("Expenses", legendX + 20, legendY + 12);
-
-                // Income legend
-                g2d.setColor(new Color(75, 192, 192));
-                g2d.fillRect(legendX, legendY + 25, 15, 15);
-                g2d.setColor(Color.BLACK);
-                g2d.drawRect(legendX, legendY + 25, 15, 15);
-                g2d.drawString("Income", legendX + 20, legendY + 37);
+        // Draw points only where they do not run together
+        if (kept.length == 1 || (xs[kept.length - 1] - xs[0]) / (kept.length - 1) >= TREND_MARKER_PIXELS) {
+            for (int i = 0; i < kept.length; i++) {
+                g2d.fillOval(xs[i] - 4, ys[i] - 4, 8, 8);
             }
-        };
-
-        lineChartPanel.add(chartPanel, BorderLayout.CENTER);
-
-        return lineChartPanel;
+        }
     }
 
     /**
-     * Main method to launch the application
+     * Main method to launch the application. An optional argument names the
+     * ledger to open instead of the configured default.
      */
     public static void main(String[] args) {
+        DatabaseConfig config = args.length > 0 ? DatabaseConfig.forLedger(args[0]) : DatabaseConfig.load();
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
-                new Savr().setVisible(true);
+                new Savr(config).setVisible(true);
             }
         });
     }
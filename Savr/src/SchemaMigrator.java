@@ -0,0 +1,263 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Applies versioned schema changes to the database. The current version is
+ * recorded in the schema_version table, and each pending migration runs in
+ * its own database transaction, so a failed migration leaves the schema at
+ * the last good version.
+ */
+public class SchemaMigrator {
+
+    /**
+     * A single numbered schema change
+     */
+    public static class Migration {
+        private final int version;
+        private final String description;
+        private final List<String> statements;
+
+        public Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = new ArrayList<>();
+            Collections.addAll(this.statements, statements);
+        }
+
+        public int getVersion() { return version; }
+        public String getDescription() { return description; }
+        public List<String> getStatements() { return statements; }
+    }
+
+    // Ordered by version; never edit a migration once it has shipped, add a new one instead
+    private static final List<Migration> MIGRATIONS = new ArrayList<>();
+
+    static {
+        MIGRATIONS.add(new Migration(1, "Index transactions by date",
+                "CREATE INDEX IF NOT EXISTS idx_transactions_date " +
+                        "ON transactions (transaction_date, transaction_id)"));
+        MIGRATIONS.add(new Migration(2, "Covering index for income/expense totals by category",
+                "CREATE INDEX IF NOT EXISTS idx_transactions_income_category " +
+                        "ON transactions (is_income, category, amount)"));
+        MIGRATIONS.add(new Migration(3, "Covering index for payment method totals over time",
+                "CREATE INDEX IF NOT EXISTS idx_transactions_payment_date " +
+                        "ON transactions (payment_method, transaction_date, is_income, amount)"));
+
+        // SQLite cannot change a column's type in place, so the table is rebuilt with
+        // amount_cents. The summary tables are dropped here and recreated with integer
+        // totals by DatabaseManager once migrations have run.
+        MIGRATIONS.add(new Migration(4, "Store amounts as integer cents",
+                "DROP TABLE IF EXISTS monthly_category_totals",
+                "DROP TABLE IF EXISTS monthly_payment_totals",
+                "DROP TABLE IF EXISTS monthly_type_totals",
+                "CREATE TABLE transactions_new (" +
+                        "transaction_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "amount_cents INTEGER NOT NULL, " +
+                        "transaction_date DATE NOT NULL, " +
+                        "category VARCHAR(50), " +
+                        "payment_method VARCHAR(50), " +
+                        "is_income BOOLEAN DEFAULT FALSE, " +
+                        "recurring BOOLEAN DEFAULT FALSE, " +
+                        "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                        ")",
+                "INSERT INTO transactions_new (transaction_id, amount_cents, transaction_date, category, " +
+                        "payment_method, is_income, recurring, created_at) " +
+                        "SELECT transaction_id, CAST(ROUND(amount * 100) AS INTEGER), transaction_date, category, " +
+                        "payment_method, is_income, recurring, created_at FROM transactions",
+                // Keep the AUTOINCREMENT high-water mark so IDs of deleted rows are not reused
+                "DELETE FROM sqlite_sequence WHERE name = 'transactions_new'",
+                "INSERT INTO sqlite_sequence (name, seq) " +
+                        "SELECT 'transactions_new', seq FROM sqlite_sequence WHERE name = 'transactions'",
+                "DROP TABLE transactions",
+                "ALTER TABLE transactions_new RENAME TO transactions",
+                "CREATE INDEX idx_transactions_date ON transactions (transaction_date, transaction_id)",
+                "CREATE INDEX idx_transactions_income_category ON transactions (is_income, category, amount_cents)",
+                "CREATE INDEX idx_transactions_payment_date " +
+                        "ON transactions (payment_method, transaction_date, is_income, amount_cents)"));
+        MIGRATIONS.add(new Migration(5, "Indexes for transaction search",
+                "CREATE INDEX IF NOT EXISTS idx_transactions_category_date " +
+                        "ON transactions (category, transaction_date, transaction_id)",
+                "CREATE INDEX IF NOT EXISTS idx_transactions_amount " +
+                        "ON transactions (amount_cents, transaction_date)",
+                // Partial index: recurring rows are a small share of the ledger
+                "CREATE INDEX IF NOT EXISTS idx_transactions_recurring " +
+                        "ON transactions (transaction_date, transaction_id) WHERE recurring = 1"));
+        // occurrences counts the transactions generated so far; next_date is derived from it
+        // and kept alongside so the scheduler can find due rules through an index
+        MIGRATIONS.add(new Migration(6, "Recurrence rules",
+                "CREATE TABLE IF NOT EXISTS recurrence_rules (" +
+                        "rule_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "amount_cents INTEGER NOT NULL, " +
+                        "category VARCHAR(50), " +
+                        "payment_method VARCHAR(50), " +
+                        "is_income BOOLEAN DEFAULT FALSE, " +
+                        "frequency VARCHAR(10) NOT NULL, " +
+                        "interval_count INTEGER NOT NULL DEFAULT 1, " +
+                        "start_date DATE NOT NULL, " +
+                        "end_date DATE, " +
+                        "occurrences INTEGER NOT NULL DEFAULT 0, " +
+                        "next_date DATE, " +
+                        "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                        ")",
+                "CREATE INDEX IF NOT EXISTS idx_recurrence_rules_next_date ON recurrence_rules (next_date)"));
+        // period is 'monthly' for a limit that applies to every month, or a yyyy-MM month
+        MIGRATIONS.add(new Migration(7, "Category budgets",
+                "CREATE TABLE IF NOT EXISTS budgets (" +
+                        "category VARCHAR(50) NOT NULL, " +
+                        "period VARCHAR(10) NOT NULL, " +
+                        "limit_cents INTEGER NOT NULL, " +
+                        "PRIMARY KEY (category, period)" +
+                        ")"));
+        // Append-only log of every change to transactions, written by triggers so it commits
+        // atomically with the change itself whichever code path made it
+        MIGRATIONS.add(new Migration(8, "Transaction change log",
+                "CREATE TABLE IF NOT EXISTS change_log (" +
+                        "seq INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "change_type VARCHAR(6) NOT NULL, " +
+                        "transaction_id INTEGER NOT NULL, " +
+                        "before_amount_cents INTEGER, " +
+                        "before_date DATE, " +
+                        "before_category VARCHAR(50), " +
+                        "before_payment_method VARCHAR(50), " +
+                        "before_is_income BOOLEAN, " +
+                        "before_recurring BOOLEAN, " +
+                        "after_amount_cents INTEGER, " +
+                        "after_date DATE, " +
+                        "after_category VARCHAR(50), " +
+                        "after_payment_method VARCHAR(50), " +
+                        "after_is_income BOOLEAN, " +
+                        "after_recurring BOOLEAN, " +
+                        "changed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                        ")",
+                "CREATE TRIGGER IF NOT EXISTS change_log_insert AFTER INSERT ON transactions BEGIN " +
+                        "INSERT INTO change_log (change_type, transaction_id, " + loggedColumns("after_") + ") " +
+                        "VALUES ('INSERT', NEW.transaction_id, " + rowValues("NEW") + "); END",
+                "CREATE TRIGGER IF NOT EXISTS change_log_update AFTER UPDATE ON transactions BEGIN " +
+                        "INSERT INTO change_log (change_type, transaction_id, " + loggedColumns("before_") + ", " +
+                        loggedColumns("after_") + ") " +
+                        "VALUES ('UPDATE', NEW.transaction_id, " + rowValues("OLD") + ", " + rowValues("NEW") +
+                        "); END",
+                "CREATE TRIGGER IF NOT EXISTS change_log_delete AFTER DELETE ON transactions BEGIN " +
+                        "INSERT INTO change_log (change_type, transaction_id, " + loggedColumns("before_") + ") " +
+                        "VALUES ('DELETE', OLD.transaction_id, " + rowValues("OLD") + "); END"));
+        // A bulk insert puts a row in bulk_insert for the length of each batch, which turns
+        // off the per-row insert triggers; it then updates the summary tables with one
+        // grouped statement and logs the batch as a single BULK entry covering an ID range.
+        // The summary insert triggers are recreated with the same condition by DatabaseManager.
+        MIGRATIONS.add(new Migration(9, "Batch-level logging for bulk inserts and change log retention",
+                "CREATE TABLE IF NOT EXISTS bulk_insert (active INTEGER NOT NULL)",
+                "ALTER TABLE change_log ADD COLUMN last_transaction_id INTEGER",
+                "CREATE TABLE IF NOT EXISTS change_log_consumers (" +
+                        "consumer VARCHAR(50) PRIMARY KEY, " +
+                        "seq INTEGER NOT NULL" +
+                        ")",
+                "DROP TRIGGER IF EXISTS monthly_category_totals_insert",
+                "DROP TRIGGER IF EXISTS monthly_payment_totals_insert",
+                "DROP TRIGGER IF EXISTS monthly_type_totals_insert",
+                "DROP TRIGGER IF EXISTS change_log_insert",
+                "CREATE TRIGGER change_log_insert AFTER INSERT ON transactions " +
+                        "WHEN NOT EXISTS (SELECT 1 FROM bulk_insert) BEGIN " +
+                        "INSERT INTO change_log (change_type, transaction_id, " + loggedColumns("after_") + ") " +
+                        "VALUES ('INSERT', NEW.transaction_id, " + rowValues("NEW") + "); END"));
+    }
+
+    /**
+     * The change_log columns holding one side (before_ or after_) of a change
+     */
+    private static String loggedColumns(String prefix) {
+        return prefix + "amount_cents, " + prefix + "date, " + prefix + "category, " +
+                prefix + "payment_method, " + prefix + "is_income, " + prefix + "recurring";
+    }
+
+    /**
+     * The logged columns of a trigger row (NEW or OLD), in change_log order
+     */
+    private static String rowValues(String row) {
+        return row + ".amount_cents, " + row + ".transaction_date, " + row + ".category, " +
+                row + ".payment_method, " + row + ".is_income, " + row + ".recurring";
+    }
+
+    private final Connection connection;
+
+    public SchemaMigrator(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Brings the schema up to the latest version
+     *
+     * @return The schema version after migrating
+     */
+    public int migrate() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INTEGER PRIMARY KEY, " +
+                    "description VARCHAR(200), " +
+                    "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                    ")");
+        }
+
+        int currentVersion = getCurrentVersion();
+        for (Migration migration : MIGRATIONS) {
+            if (migration.getVersion() > currentVersion) {
+                apply(migration);
+                currentVersion = migration.getVersion();
+            }
+        }
+        return currentVersion;
+    }
+
+    /**
+     * Reads the highest applied migration version
+     *
+     * @return The current version, or 0 for a database with no migrations
+     */
+    public int getCurrentVersion() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Runs one migration and records it, all inside a single transaction
+     */
+    private void apply(Migration migration) throws SQLException {
+        long startTime = System.nanoTime();
+        boolean autoCommit = connection.getAutoCommit();
+
+        try {
+            connection.setAutoCommit(false);
+
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : migration.getStatements()) {
+                    statement.execute(sql);
+                }
+            }
+
+            try (PreparedStatement pstmt = connection.prepareStatement(
+                    "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                pstmt.setInt(1, migration.getVersion());
+                pstmt.setString(2, migration.getDescription());
+                pstmt.executeUpdate();
+            }
+
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw new SQLException("Migration " + migration.getVersion() + " (" +
+                    migration.getDescription() + ") failed: " + e.getMessage(), e);
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+
+        System.out.println(String.format("Applied migration %d (%s) in %d ms.", migration.getVersion(),
+                migration.getDescription(), (System.nanoTime() - startTime) / 1_000_000));
+    }
+}
@@ -0,0 +1,151 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reuses PreparedStatements for one connection instead of re-preparing the
+ * same SQL on every call. Statements handed out by prepare() can be used in
+ * try-with-resources as usual: closing one returns it to the cache rather
+ * than finalizing it. A statement that is already checked out is never
+ * shared; a second caller gets its own.
+ */
+public class StatementCache implements AutoCloseable {
+    private static final int DEFAULT_MAX_SIZE = 64;
+
+    private final Connection connection;
+    private final int maxSize;
+
+    // Idle statements by key, least recently used first
+    private final LinkedHashMap<String, PreparedStatement> idle = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits;
+    private long misses;
+    private boolean closed;
+
+    public StatementCache(Connection connection) {
+        this(connection, DEFAULT_MAX_SIZE);
+    }
+
+    public StatementCache(Connection connection, int maxSize) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns a prepared statement for the SQL, reusing a cached one if possible
+     *
+     * @param sql SQL to prepare
+     * @return Statement whose close() hands it back to the cache
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return prepare(sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    /**
+     * Returns a prepared statement for the SQL, reusing a cached one if possible
+     *
+     * @param sql SQL to prepare
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS or Statement.NO_GENERATED_KEYS
+     * @return Statement whose close() hands it back to the cache
+     */
+    public synchronized PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys + ":" + sql;
+        PreparedStatement statement = idle.remove(key);
+        if (statement != null) {
+            hits++;
+        } else {
+            misses++;
+            statement = connection.prepareStatement(sql, autoGeneratedKeys);
+        }
+        return wrap(key, statement);
+    }
+
+    /**
+     * Puts a statement back once its caller has closed it
+     */
+    private synchronized void release(String key, PreparedStatement statement) throws SQLException {
+        try {
+            statement.clearParameters();
+            statement.clearBatch();
+        } catch (SQLException e) {
+            // A statement that cannot be reset is not worth keeping
+            statement.close();
+            return;
+        }
+
+        if (closed || idle.containsKey(key)) {
+            statement.close();
+            return;
+        }
+
+        idle.put(key, statement);
+        if (idle.size() > maxSize) {
+            Iterator<Map.Entry<String, PreparedStatement>> eldest = idle.entrySet().iterator();
+            eldest.next().getValue().close();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Wraps a statement so that close() releases it back to the cache
+     */
+    private PreparedStatement wrap(String key, PreparedStatement statement) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean released;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("close") && method.getParameterCount() == 0) {
+                    if (!released) {
+                        released = true;
+                        release(key, statement);
+                    }
+                    return null;
+                }
+                try {
+                    return method.invoke(statement, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+        return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, handler);
+    }
+
+    public synchronized int size() {
+        return idle.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Closes every cached statement; statements still checked out are
+     * closed when their callers release them
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (PreparedStatement statement : idle.values()) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing cached statement: " + e.getMessage());
+            }
+        }
+        idle.clear();
+    }
+}
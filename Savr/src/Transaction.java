@@ -5,17 +5,17 @@ import java.time.LocalDate;
  */
 public class Transaction {
     private int id;
-    private double amount;
+    private long amountCents;
     private LocalDate date;
     private String category;
     private String paymentMethod;
     private boolean isIncome;
     private boolean recurring;
 
-    public Transaction(int id, double amount, LocalDate date, String category,
+    public Transaction(int id, long amountCents, LocalDate date, String category,
                        String paymentMethod, boolean isIncome, boolean recurring) {
         this.id = id;
-        this.amount = amount;
+        this.amountCents = amountCents;
         this.date = date;
         this.category = category;
         this.paymentMethod = paymentMethod;
@@ -25,7 +25,7 @@ public class Transaction {
 
     // Getters and setters
     public int getId() { return id; }
-    public double getAmount() { return amount; }
+    public long getAmountCents() { return amountCents; }
     public LocalDate getDate() { return date; }
     public String getCategory() { return category; }
     public String getPaymentMethod() { return paymentMethod; }
@@ -34,7 +34,7 @@ public class Transaction {
 
     @Override
     public String toString() {
-        return String.format("Transaction #%d: $%.2f on %s (%s)",
-                id, amount, date, isIncome ? "Income" : "Expense");
+        return String.format("Transaction #%d: %s on %s (%s)",
+                id, Money.format(amountCents), date, isIncome ? "Income" : "Expense");
     }
 }
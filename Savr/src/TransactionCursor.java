@@ -0,0 +1,133 @@
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Forward-only iterator over a query result that reads rows from the
+ * database as it goes, so memory use does not grow with the ledger. The
+ * cursor holds an open statement and a pooled connection and must be
+ * closed, ideally with try-with-resources, on the thread that opened it;
+ * it also closes itself after the last row.
+ */
+public class TransactionCursor implements Iterator<Transaction>, AutoCloseable {
+
+    /**
+     * Maps the current result set row to a Transaction
+     */
+    interface RowMapper {
+        Transaction map(ResultSet rs) throws SQLException;
+    }
+
+    private final PreparedStatement statement;
+    private final ResultSet resultSet;
+    private final RowMapper mapper;
+    private final ConnectionPool.Lease lease;
+    private final SQLException openError;
+    private Boolean hasNext;
+    private boolean closed;
+
+    /**
+     * A closed cursor returned when the query could not be run. Reading it
+     * throws, so a failed query is not mistaken for an empty result.
+     */
+    static TransactionCursor failed(SQLException openError) {
+        return new TransactionCursor(openError);
+    }
+
+    private TransactionCursor(SQLException openError) {
+        this.statement = null;
+        this.resultSet = null;
+        this.mapper = null;
+        this.lease = null;
+        this.openError = openError;
+        this.closed = true;
+    }
+
+    /**
+     * Runs the statement; the lease it was prepared on is returned when the cursor closes
+     */
+    TransactionCursor(PreparedStatement statement, RowMapper mapper, ConnectionPool.Lease lease)
+            throws SQLException {
+        this.statement = statement;
+        this.mapper = mapper;
+        this.lease = lease;
+        this.openError = null;
+        try {
+            this.resultSet = statement.executeQuery();
+        } catch (SQLException e) {
+            statement.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (openError != null) {
+            throw new IllegalStateException("Error reading transactions: " + openError.getMessage(), openError);
+        }
+        if (hasNext == null) {
+            try {
+                hasNext = !closed && resultSet.next();
+            } catch (SQLException e) {
+                close();
+                throw new IllegalStateException("Error reading transactions: " + e.getMessage(), e);
+            }
+            if (!hasNext) {
+                close();
+            }
+        }
+        return hasNext;
+    }
+
+    @Override
+    public Transaction next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        hasNext = null;
+        try {
+            return mapper.map(resultSet);
+        } catch (SQLException e) {
+            close();
+            throw new IllegalStateException("Error reading transactions: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Wraps the cursor in a sequential Stream; closing the stream closes the cursor
+     */
+    public Stream<Transaction> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+    }
+
+    /**
+     * Closes the result set and statement and returns the connection. Safe
+     * to call more than once.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        hasNext = false;
+        try {
+            resultSet.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing transaction cursor: " + e.getMessage());
+        }
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing transaction cursor: " + e.getMessage());
+        }
+        lease.close();
+    }
+}
@@ -0,0 +1,672 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams transactions out of the database for analytics jobs, as CSV,
+ * JSON Lines or a compact columnar binary format, optionally gzipped. Rows
+ * come from a TransactionCursor and are encoded straight into a reused NIO
+ * buffer that is drained to a file channel, so memory use stays the same
+ * however many rows are exported.
+ *
+ * CSV has the header id,amount,date,category,payment_method,is_income,recurring
+ * with amounts in dollars, so TransactionImporter can read it back. JSON
+ * Lines has one object per row with the amount in integer amount_cents.
+ *
+ * The columnar format (.savrcol) is big-endian and laid out as:
+ * <pre>
+ * "SAVRCOL1"
+ * row groups of up to ROW_GROUP_SIZE rows, each:
+ *   int32 row count
+ *   new category dictionary entries: varint count, then (varint length, UTF-8 bytes) each
+ *   new payment method dictionary entries: the same
+ *   six columns, each an int32 byte length followed by the values:
+ *     id, date (epoch day): zigzag varint deltas from the previous row, starting from 0 in each group
+ *     amount (cents): zigzag varint
+ *     category, payment method: varint dictionary codes; 0 is null, entries are numbered from 1 in file order
+ *     flags: is_income bits, then recurring bits, each packed 8 rows to a byte, lowest bit first
+ * int32 0, int64 total rows, "SAVRCOL1"
+ * </pre>
+ * Column lengths let a reader skip the columns it does not need, and every
+ * group decodes on its own apart from the dictionaries.
+ */
+public class TransactionExporter {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int FETCH_SIZE = 10_000;
+    private static final int PROGRESS_INTERVAL = 100_000;
+    private static final int ROW_GROUP_SIZE = 65_536;
+    private static final byte[] COLUMNAR_MAGIC = "SAVRCOL1".getBytes(StandardCharsets.US_ASCII);
+
+    // Categories and payment methods repeat endlessly, so their escaped bytes are cached up to this many values
+    private static final int MAX_CACHED_STRINGS = 4096;
+
+    /**
+     * Output file formats
+     */
+    public enum Format {
+        CSV(".csv"),
+        JSONL(".jsonl"),
+        COLUMNAR(".savrcol");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() { return extension; }
+    }
+
+    /**
+     * Receives progress updates while an export runs
+     */
+    public interface ProgressListener {
+        void onProgress(long rowsWritten);
+    }
+
+    /**
+     * Summary of an export
+     */
+    public static class ExportReport {
+        private final long rowsWritten;
+        private final long bytesWritten;
+        private final long elapsedMillis;
+
+        ExportReport(long rowsWritten, long bytesWritten, long elapsedMillis) {
+            this.rowsWritten = rowsWritten;
+            this.bytesWritten = bytesWritten;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public long getRowsWritten() { return rowsWritten; }
+
+        /** Bytes before compression */
+        public long getBytesWritten() { return bytesWritten; }
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        @Override
+        public String toString() {
+            double seconds = elapsedMillis / 1000.0;
+            return String.format("Exported %,d transactions (%,d KB) in %.2f s (%.0f rows/s)", rowsWritten,
+                    bytesWritten / 1024, seconds, seconds > 0 ? rowsWritten / seconds : (double) rowsWritten);
+        }
+    }
+
+    private final DatabaseManager dbManager;
+    private ProgressListener progressListener;
+
+    public TransactionExporter(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Picks the format from a file name such as ledger.csv or ledger.jsonl.gz
+     *
+     * @return The format, or null if the extension is not recognised
+     */
+    public static Format formatFor(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".gz")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        for (Format format : Format.values()) {
+            if (name.endsWith(format.getExtension())) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Exports the transactions in a date range, oldest first. A failed
+     * export, including one whose query could not be run, throws and
+     * deletes the partly written file.
+     *
+     * @param file Destination file, overwritten if it exists
+     * @param format Encoding of the rows
+     * @param startDate Beginning of date range, or null for no lower bound
+     * @param endDate End of date range, or null for no upper bound
+     * @param gzip Whether to gzip the output
+     * @return Report describing the export
+     */
+    public ExportReport export(Path file, Format format, LocalDate startDate, LocalDate endDate, boolean gzip)
+            throws IOException {
+        long startTime = System.nanoTime();
+        boolean completed = false;
+        try (ChannelWriter out = new ChannelWriter(open(file, gzip));
+             TransactionCursor cursor = dbManager.openCursor(startDate, endDate, FETCH_SIZE)) {
+            RowEncoder encoder = format == Format.CSV ? new CsvEncoder(out)
+                    : format == Format.JSONL ? new JsonLinesEncoder(out) : new ColumnarEncoder(out);
+
+            long rows = 0;
+            encoder.begin();
+            while (cursor.hasNext()) {
+                encoder.write(cursor.next());
+                if (++rows % PROGRESS_INTERVAL == 0 && progressListener != null) {
+                    progressListener.onProgress(rows);
+                }
+            }
+            encoder.end();
+            out.flush();
+            completed = true;
+
+            ExportReport report = new ExportReport(rows, out.getBytesWritten(),
+                    (System.nanoTime() - startTime) / 1_000_000);
+            System.out.println(report + " to " + file + ".");
+            return report;
+        } catch (IllegalStateException e) {
+            // The cursor could not run its query or read a row
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static WritableByteChannel open(Path file, boolean gzip) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        if (!gzip) {
+            return channel;
+        }
+        // Fastest level, so compressing keeps up with the cursor
+        return Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE) {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        });
+    }
+
+    /**
+     * Encodes values straight into a direct buffer, which is drained to the
+     * channel whenever the next value might not fit
+     */
+    private static class ChannelWriter implements Closeable {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final byte[] digits = new byte[20];
+        private long bytesWritten;
+
+        ChannelWriter(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        long getBytesWritten() {
+            return bytesWritten + buffer.position();
+        }
+
+        /**
+         * Makes room for at least bytes more bytes
+         */
+        void reserve(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void put(byte value) throws IOException {
+            reserve(1);
+            buffer.put(value);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            put(bytes, 0, bytes.length);
+        }
+
+        void put(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                reserve(1);
+                int chunk = Math.min(length, buffer.remaining());
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+                length -= chunk;
+            }
+        }
+
+        void put(ByteBuffer bytes) throws IOException {
+            while (bytes.hasRemaining()) {
+                reserve(1);
+                int limit = bytes.limit();
+                bytes.limit(bytes.position() + Math.min(bytes.remaining(), buffer.remaining()));
+                buffer.put(bytes);
+                bytes.limit(limit);
+            }
+        }
+
+        void putAscii(String text) throws IOException {
+            reserve(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                buffer.put((byte) text.charAt(i));
+            }
+        }
+
+        void putInt(int value) throws IOException {
+            reserve(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            reserve(8);
+            buffer.putLong(value);
+        }
+
+        /**
+         * Writes an unsigned LEB128 varint, 7 bits per byte
+         */
+        void putVarLong(long value) throws IOException {
+            reserve(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        /**
+         * Writes a number in decimal, at least minDigits digits long
+         */
+        void putDecimal(long value, int minDigits) throws IOException {
+            reserve(21);
+            if (value < 0) {
+                buffer.put((byte) '-');
+                // Long.MIN_VALUE has no positive counterpart; its digits come out right via the unsigned form
+                value = -value;
+            }
+            int count = 0;
+            do {
+                digits[count++] = (byte) ('0' + Long.remainderUnsigned(value, 10));
+                value = Long.divideUnsigned(value, 10);
+            } while (value != 0 || count < minDigits);
+            while (count > 0) {
+                buffer.put(digits[--count]);
+            }
+        }
+
+        /**
+         * Writes cents as a plain dollar amount, e.g. -12.05
+         */
+        void putCents(long cents) throws IOException {
+            if (cents < 0) {
+                put((byte) '-');
+            }
+            long magnitude = Math.abs(cents);
+            putDecimal(magnitude / 100, 1);
+            put((byte) '.');
+            putDecimal(magnitude % 100, 2);
+        }
+
+        /**
+         * Writes a date as yyyy-MM-dd
+         */
+        void putDate(LocalDate date) throws IOException {
+            putDecimal(date.getYear(), 4);
+            put((byte) '-');
+            putDecimal(date.getMonthValue(), 2);
+            put((byte) '-');
+            putDecimal(date.getDayOfMonth(), 2);
+        }
+
+        void flush() throws IOException {
+            bytesWritten += buffer.position();
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Writes rows in one output format
+     */
+    private interface RowEncoder {
+        void begin() throws IOException;
+        void write(Transaction t) throws IOException;
+        void end() throws IOException;
+    }
+
+    /**
+     * Escapes strings for a text format, remembering the bytes of the values
+     * it has seen
+     */
+    private abstract static class TextEncoder implements RowEncoder {
+        protected final ChannelWriter out;
+        private final Map<String, byte[]> escaped = new HashMap<>();
+
+        TextEncoder(ChannelWriter out) {
+            this.out = out;
+        }
+
+        void putEscaped(String value) throws IOException {
+            byte[] bytes = escaped.get(value);
+            if (bytes == null) {
+                bytes = escape(value).getBytes(StandardCharsets.UTF_8);
+                if (escaped.size() < MAX_CACHED_STRINGS) {
+                    escaped.put(value, bytes);
+                }
+            }
+            out.put(bytes);
+        }
+
+        abstract String escape(String value);
+
+        @Override
+        public void end() {
+        }
+    }
+
+    private static class CsvEncoder extends TextEncoder {
+        CsvEncoder(ChannelWriter out) {
+            super(out);
+        }
+
+        @Override
+        public void begin() throws IOException {
+            out.putAscii("id,amount,date,category,payment_method,is_income,recurring\n");
+        }
+
+        @Override
+        public void write(Transaction t) throws IOException {
+            out.putDecimal(t.getId(), 1);
+            out.put((byte) ',');
+            out.putCents(t.getAmountCents());
+            out.put((byte) ',');
+            out.putDate(t.getDate());
+            out.put((byte) ',');
+            if (t.getCategory() != null) {
+                putEscaped(t.getCategory());
+            }
+            out.put((byte) ',');
+            if (t.getPaymentMethod() != null) {
+                putEscaped(t.getPaymentMethod());
+            }
+            out.putAscii(t.isIncome() ? ",true" : ",false");
+            out.putAscii(t.isRecurring() ? ",true\n" : ",false\n");
+        }
+
+        @Override
+        String escape(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                    && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    private static class JsonLinesEncoder extends TextEncoder {
+        JsonLinesEncoder(ChannelWriter out) {
+            super(out);
+        }
+
+        @Override
+        public void begin() {
+        }
+
+        @Override
+        public void write(Transaction t) throws IOException {
+            out.putAscii("{\"id\":");
+            out.putDecimal(t.getId(), 1);
+            out.putAscii(",\"amount_cents\":");
+            out.putDecimal(t.getAmountCents(), 1);
+            out.putAscii(",\"date\":\"");
+            out.putDate(t.getDate());
+            out.putAscii("\",\"category\":");
+            putString(t.getCategory());
+            out.putAscii(",\"payment_method\":");
+            putString(t.getPaymentMethod());
+            out.putAscii(t.isIncome() ? ",\"is_income\":true" : ",\"is_income\":false");
+            out.putAscii(t.isRecurring() ? ",\"recurring\":true}\n" : ",\"recurring\":false}\n");
+        }
+
+        private void putString(String value) throws IOException {
+            if (value == null) {
+                out.putAscii("null");
+            } else {
+                putEscaped(value);
+            }
+        }
+
+        @Override
+        String escape(String value) {
+            StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    json.append('\\').append(c);
+                } else if (c < 0x20) {
+                    json.append(String.format("\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+            return json.append('"').toString();
+        }
+    }
+
+    /**
+     * Buffers one row group in primitive arrays, then writes it column by column
+     */
+    private static class ColumnarEncoder implements RowEncoder {
+        private final ChannelWriter out;
+        private final int[] ids = new int[ROW_GROUP_SIZE];
+        private final int[] epochDays = new int[ROW_GROUP_SIZE];
+        private final long[] amountCents = new long[ROW_GROUP_SIZE];
+        private final short[] categoryIds = new short[ROW_GROUP_SIZE];
+        private final short[] paymentMethodIds = new short[ROW_GROUP_SIZE];
+        private final boolean[] income = new boolean[ROW_GROUP_SIZE];
+        private final boolean[] recurring = new boolean[ROW_GROUP_SIZE];
+        private final ColumnarLedger.Dictionary categories = new ColumnarLedger.Dictionary();
+        private final ColumnarLedger.Dictionary paymentMethods = new ColumnarLedger.Dictionary();
+        // Dictionary entries already written, counting the null entry
+        private int writtenCategories = 1;
+        private int writtenPaymentMethods = 1;
+        // A varint takes at most 10 bytes, so one column of a group always fits (dictionaries are not buffered)
+        private final ByteBuffer column = ByteBuffer.allocate(ROW_GROUP_SIZE * 10);
+        private int size;
+        private long totalRows;
+
+        ColumnarEncoder(ChannelWriter out) {
+            this.out = out;
+        }
+
+        @Override
+        public void begin() throws IOException {
+            out.put(COLUMNAR_MAGIC);
+        }
+
+        @Override
+        public void write(Transaction t) throws IOException {
+            ids[size] = t.getId();
+            epochDays[size] = (int) t.getDate().toEpochDay();
+            amountCents[size] = t.getAmountCents();
+            categoryIds[size] = encode(categories, t.getCategory(), "categories");
+            paymentMethodIds[size] = encode(paymentMethods, t.getPaymentMethod(), "payment methods");
+            income[size] = t.isIncome();
+            recurring[size] = t.isRecurring();
+            if (++size == ROW_GROUP_SIZE) {
+                writeRowGroup();
+            }
+        }
+
+        @Override
+        public void end() throws IOException {
+            if (size > 0) {
+                writeRowGroup();
+            }
+            out.putInt(0);
+            out.putLong(totalRows);
+            out.put(COLUMNAR_MAGIC);
+        }
+
+        private static short encode(ColumnarLedger.Dictionary dictionary, String value, String column)
+                throws IOException {
+            try {
+                return dictionary.encode(value);
+            } catch (IllegalStateException e) {
+                throw new IOException("The columnar format holds at most " + Short.MAX_VALUE + " distinct " +
+                        column + "; export this ledger as CSV or JSON Lines instead", e);
+            }
+        }
+
+        private void writeRowGroup() throws IOException {
+            out.putInt(size);
+            writtenCategories = writeNewEntries(categories, writtenCategories);
+            writtenPaymentMethods = writeNewEntries(paymentMethods, writtenPaymentMethods);
+
+            column.clear();
+            int previous = 0;
+            for (int i = 0; i < size; i++) {
+                putVarLong(zigzag((long) ids[i] - previous));
+                previous = ids[i];
+            }
+            writeColumn();
+
+            previous = 0;
+            for (int i = 0; i < size; i++) {
+                putVarLong(zigzag((long) epochDays[i] - previous));
+                previous = epochDays[i];
+            }
+            writeColumn();
+
+            for (int i = 0; i < size; i++) {
+                putVarLong(zigzag(amountCents[i]));
+            }
+            writeColumn();
+
+            for (int i = 0; i < size; i++) {
+                putVarLong(categoryIds[i]);
+            }
+            writeColumn();
+
+            for (int i = 0; i < size; i++) {
+                putVarLong(paymentMethodIds[i]);
+            }
+            writeColumn();
+
+            putBits(income);
+            putBits(recurring);
+            writeColumn();
+
+            totalRows += size;
+            size = 0;
+        }
+
+        /**
+         * Writes the dictionary entries added since the last group. They go
+         * straight to the output, since their total length has no bound.
+         *
+         * @return The number of entries written so far
+         */
+        private int writeNewEntries(ColumnarLedger.Dictionary dictionary, int written) throws IOException {
+            out.putVarLong(dictionary.size() - written);
+            for (int code = written; code < dictionary.size(); code++) {
+                byte[] bytes = dictionary.decode((short) code).getBytes(StandardCharsets.UTF_8);
+                out.putVarLong(bytes.length);
+                out.put(bytes);
+            }
+            return dictionary.size();
+        }
+
+        private void putBits(boolean[] flags) {
+            for (int i = 0; i < size; i += 8) {
+                int packed = 0;
+                for (int bit = 0; bit < 8 && i + bit < size; bit++) {
+                    if (flags[i + bit]) {
+                        packed |= 1 << bit;
+                    }
+                }
+                column.put((byte) packed);
+            }
+        }
+
+        private void writeColumn() throws IOException {
+            column.flip();
+            out.putInt(column.remaining());
+            out.put(column);
+            column.clear();
+        }
+
+        private void putVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                column.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            column.put((byte) value);
+        }
+
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+    /**
+     * Command line entry point.
+     *
+     * Usage: TransactionExporter file [--from yyyy-MM-dd] [--to yyyy-MM-dd] [--ledger name]
+     * The format comes from the file extension (.csv, .jsonl or .savrcol), and
+     * a trailing .gz gzips the output. Without --ledger the configured default
+     * database is used.
+     */
+    public static void main(String[] args) throws IOException {
+        Path file = args.length > 0 ? Paths.get(args[0]) : null;
+        Format format = file != null ? formatFor(file) : null;
+        if (format == null) {
+            System.err.println("Usage: TransactionExporter file.(csv|jsonl|savrcol)[.gz] " +
+                    "[--from yyyy-MM-dd] [--to yyyy-MM-dd] [--ledger name]");
+            System.exit(1);
+        }
+
+        LocalDate from = null;
+        LocalDate to = null;
+        String ledger = null;
+        for (int i = 1; i < args.length - 1; i++) {
+            if (args[i].equals("--from")) {
+                from = LocalDate.parse(args[i + 1]);
+            } else if (args[i].equals("--to")) {
+                to = LocalDate.parse(args[i + 1]);
+            } else if (args[i].equals("--ledger")) {
+                ledger = args[i + 1];
+            }
+        }
+
+        DatabaseManager db = new DatabaseManager(ledger != null ? DatabaseConfig.forLedger(ledger)
+                : DatabaseConfig.load());
+        try {
+            TransactionExporter exporter = new TransactionExporter(db);
+            exporter.setProgressListener(rows -> System.out.println(String.format("Exported %,d rows...", rows)));
+            boolean gzip = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz");
+            exporter.export(file, format, from, to, gzip);
+        } finally {
+            db.closeConnection();
+        }
+    }
+}
@@ -0,0 +1,395 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streams bank statements (CSV or OFX/QFX) into the database in batches.
+ * Only one batch of rows is held in memory at a time, and bad lines are
+ * recorded in the report instead of aborting the import.
+ */
+public class TransactionImporter {
+    private static final int DEFAULT_BATCH_SIZE = 5000;
+    private static final int PROGRESS_INTERVAL = 100_000;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final String DEFAULT_CATEGORY = "Other";
+    private static final String DEFAULT_PAYMENT_METHOD = "Other";
+    private static final DateTimeFormatter[] DATE_FORMATS = {
+            DateTimeFormatter.ISO_LOCAL_DATE,
+            DateTimeFormatter.ofPattern("M/d/yyyy"),
+            DateTimeFormatter.ofPattern("yyyyMMdd")
+    };
+
+    /**
+     * Receives progress updates while a statement is being imported
+     */
+    public interface ProgressListener {
+        void onProgress(long linesRead, long rowsImported);
+    }
+
+    /**
+     * Summary of an import: counts plus the first errors that were hit
+     */
+    public static class ImportReport {
+        private long linesRead;
+        private long rowsImported;
+        private long errorCount;
+        private long elapsedMillis;
+        private final long startTime = System.nanoTime();
+        private long nextProgress = PROGRESS_INTERVAL;
+        private final List<String> errors = new ArrayList<>();
+
+        private void addError(long lineNumber, String message) {
+            errorCount++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add("Line " + lineNumber + ": " + message);
+            }
+        }
+
+        public long getLinesRead() { return linesRead; }
+        public long getRowsImported() { return rowsImported; }
+        public long getErrorCount() { return errorCount; }
+        public List<String> getErrors() { return errors; }
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        public double getRowsPerSecond() {
+            return elapsedMillis > 0 ? rowsImported * 1000.0 / elapsedMillis : rowsImported;
+        }
+
+        private ImportReport finish() {
+            elapsedMillis = (System.nanoTime() - startTime) / 1_000_000;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Read %d lines, imported %d transactions in %.2f s (%.0f rows/s), %d errors",
+                    linesRead, rowsImported, elapsedMillis / 1000.0, getRowsPerSecond(), errorCount);
+        }
+    }
+
+    private final DatabaseManager dbManager;
+    private final int batchSize;
+    private ProgressListener progressListener;
+
+    public TransactionImporter(DatabaseManager dbManager) {
+        this(dbManager, DEFAULT_BATCH_SIZE);
+    }
+
+    public TransactionImporter(DatabaseManager dbManager, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.dbManager = dbManager;
+        this.batchSize = batchSize;
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Imports a statement file, choosing the parser from the file extension
+     *
+     * @param file CSV, OFX or QFX statement
+     * @return Report describing the import
+     */
+    public ImportReport importFile(Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (name.endsWith(".ofx") || name.endsWith(".qfx")) {
+                return importOfx(reader);
+            }
+            return importCsv(reader);
+        }
+    }
+
+    /**
+     * Imports a CSV statement. The first line must be a header; recognised
+     * columns are amount, date, category, payment_method, is_income (or type)
+     * and recurring. When there is no type column, negative amounts are
+     * treated as expenses and positive amounts as income.
+     *
+     * @param reader Source of the CSV data
+     * @return Report describing the import
+     */
+    public ImportReport importCsv(Reader reader) throws IOException {
+        BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        ImportReport report = new ImportReport();
+        List<Transaction> batch = new ArrayList<>(batchSize);
+        List<String> fields = new ArrayList<>();
+
+        String header = in.readLine();
+        if (header == null) {
+            return report.finish();
+        }
+        report.linesRead++;
+
+        Map<String, Integer> columns = new HashMap<>();
+        splitCsvLine(header, fields);
+        for (int i = 0; i < fields.size(); i++) {
+            columns.put(normalizeColumn(fields.get(i)), i);
+        }
+
+        int amountColumn = column(columns, "amount");
+        int dateColumn = column(columns, "date", "transaction_date");
+        int categoryColumn = column(columns, "category");
+        int paymentColumn = column(columns, "payment_method", "payment", "method");
+        int typeColumn = column(columns, "is_income", "type");
+        int recurringColumn = column(columns, "recurring");
+
+        if (amountColumn < 0 || dateColumn < 0) {
+            report.addError(1, "Header must contain amount and date columns");
+            return report.finish();
+        }
+
+        String line;
+        while ((line = in.readLine()) != null) {
+            report.linesRead++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+
+            try {
+                splitCsvLine(line, fields);
+                long amount = Money.parse(field(fields, amountColumn));
+                LocalDate date = parseDate(field(fields, dateColumn));
+                String category = orDefault(field(fields, categoryColumn), DEFAULT_CATEGORY);
+                String payment = orDefault(field(fields, paymentColumn), DEFAULT_PAYMENT_METHOD);
+                String type = field(fields, typeColumn);
+                boolean isIncome = type.isEmpty() ? amount > 0 : parseIncome(type);
+                boolean recurring = parseFlag(field(fields, recurringColumn));
+
+                batch.add(new Transaction(0, Math.abs(amount), date, category, payment, isIncome, recurring));
+            } catch (NumberFormatException | DateTimeParseException e) {
+                report.addError(report.linesRead, e.getMessage());
+                continue;
+            }
+
+            if (batch.size() == batchSize) {
+                flush(batch, report);
+            }
+            reportProgress(report);
+        }
+
+        flush(batch, report);
+        return report.finish();
+    }
+
+    /**
+     * Imports an OFX/QFX statement. Each STMTTRN block becomes one
+     * transaction; the sign of TRNAMT decides income vs expense and
+     * TRNTYPE is used to guess the payment method.
+     *
+     * @param reader Source of the OFX data
+     * @return Report describing the import
+     */
+    public ImportReport importOfx(Reader reader) throws IOException {
+        BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        ImportReport report = new ImportReport();
+        List<Transaction> batch = new ArrayList<>(batchSize);
+
+        StringBuilder tag = new StringBuilder();
+        StringBuilder text = new StringBuilder();
+        boolean inTag = false;
+        boolean inTransaction = false;
+        long blockLine = 0;
+        String currentTag = null;
+        String amount = null;
+        String posted = null;
+        String type = null;
+
+        report.linesRead = 1;
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                report.linesRead++;
+            }
+
+            if (c == '<') {
+                // The text since the last tag belongs to that (possibly unclosed) SGML tag
+                if (inTransaction && currentTag != null) {
+                    String value = text.toString().trim();
+                    if (currentTag.equals("TRNAMT")) {
+                        amount = value;
+                    } else if (currentTag.equals("DTPOSTED")) {
+                        posted = value;
+                    } else if (currentTag.equals("TRNTYPE")) {
+                        type = value;
+                    }
+                }
+                inTag = true;
+                tag.setLength(0);
+                continue;
+            }
+
+            if (c == '>' && inTag) {
+                inTag = false;
+                currentTag = tag.toString().trim().toUpperCase(Locale.ROOT);
+                text.setLength(0);
+
+                if (currentTag.equals("STMTTRN")) {
+                    inTransaction = true;
+                    blockLine = report.linesRead;
+                    amount = null;
+                    posted = null;
+                    type = null;
+                } else if (currentTag.equals("/STMTTRN") && inTransaction) {
+                    inTransaction = false;
+                    try {
+                        if (amount == null || posted == null || posted.length() < 8) {
+                            throw new NumberFormatException("STMTTRN is missing TRNAMT or DTPOSTED");
+                        }
+                        long value = Money.parse(amount);
+                        LocalDate date = LocalDate.parse(posted.substring(0, 8), DateTimeFormatter.BASIC_ISO_DATE);
+                        batch.add(new Transaction(0, Math.abs(value), date, DEFAULT_CATEGORY,
+                                paymentMethodForOfxType(type), value > 0, false));
+                    } catch (NumberFormatException | DateTimeParseException e) {
+                        report.addError(blockLine, e.getMessage());
+                    }
+
+                    if (batch.size() == batchSize) {
+                        flush(batch, report);
+                    }
+                    reportProgress(report);
+                }
+                continue;
+            }
+
+            if (inTag) {
+                tag.append((char) c);
+            } else if (inTransaction && text.length() < 256) {
+                text.append((char) c);
+            }
+        }
+
+        flush(batch, report);
+        return report.finish();
+    }
+
+    /**
+     * Writes the pending batch to the database and clears it
+     */
+    private void flush(List<Transaction> batch, ImportReport report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        int inserted = dbManager.addTransactions(batch, batchSize);
+        report.rowsImported += inserted;
+        if (inserted < batch.size()) {
+            report.addError(report.linesRead, "Database rejected " + (batch.size() - inserted) + " of a batch of "
+                    + batch.size() + " rows");
+        }
+        batch.clear();
+    }
+
+    private void reportProgress(ImportReport report) {
+        if (progressListener != null && report.linesRead >= report.nextProgress) {
+            report.nextProgress = report.linesRead + PROGRESS_INTERVAL;
+            progressListener.onProgress(report.linesRead, report.rowsImported);
+        }
+    }
+
+    /**
+     * Splits one CSV line into fields, honouring double-quoted values
+     */
+    private static void splitCsvLine(String line, List<String> fields) {
+        fields.clear();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(ch);
+            }
+        }
+        fields.add(current.toString().trim());
+    }
+
+    private static String normalizeColumn(String name) {
+        return name.trim().toLowerCase(Locale.ROOT).replace(' ', '_');
+    }
+
+    private static int column(Map<String, Integer> columns, String... names) {
+        for (String name : names) {
+            Integer index = columns.get(name);
+            if (index != null) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static String field(List<String> fields, int index) {
+        return index >= 0 && index < fields.size() ? fields.get(index) : "";
+    }
+
+    private static String orDefault(String value, String defaultValue) {
+        return value.isEmpty() ? defaultValue : value;
+    }
+
+    private static LocalDate parseDate(String value) {
+        for (DateTimeFormatter format : DATE_FORMATS) {
+            try {
+                return LocalDate.parse(value, format);
+            } catch (DateTimeParseException e) {
+                // Try the next format
+            }
+        }
+        throw new DateTimeParseException("Unrecognised date '" + value + "'", value, 0);
+    }
+
+    private static boolean parseIncome(String value) {
+        String v = value.toLowerCase(Locale.ROOT);
+        return v.equals("income") || v.equals("credit") || parseFlag(v);
+    }
+
+    private static boolean parseFlag(String value) {
+        String v = value.toLowerCase(Locale.ROOT);
+        return v.equals("true") || v.equals("1") || v.equals("yes") || v.equals("y");
+    }
+
+    private static String paymentMethodForOfxType(String type) {
+        if (type == null) {
+            return DEFAULT_PAYMENT_METHOD;
+        }
+        switch (type.toUpperCase(Locale.ROOT)) {
+            case "POS":
+            case "DEBIT":
+                return "Debit Card";
+            case "ATM":
+            case "CASH":
+                return "Cash";
+            default:
+                return DEFAULT_PAYMENT_METHOD;
+        }
+    }
+}
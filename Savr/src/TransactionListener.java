@@ -0,0 +1,25 @@
+/**
+ * Receives each change DatabaseManager commits to the transactions table.
+ * Callbacks run on the writing thread once the change is committed: right
+ * after the write, or for writes grouped by runInTransaction, after the
+ * whole group commits. Changes rolled back with a group are never
+ * delivered. Callbacks should be quick and must not call back into the
+ * database.
+ */
+public interface TransactionListener {
+
+    /**
+     * A transaction was added. Rows from bulk inserts carry ID 0.
+     */
+    void onInsert(Transaction t);
+
+    /**
+     * A transaction was changed from before to after
+     */
+    void onUpdate(Transaction before, Transaction after);
+
+    /**
+     * A transaction was deleted
+     */
+    void onDelete(Transaction t);
+}
@@ -0,0 +1,262 @@
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Search criteria for transactions. Every criterion is optional; unset
+ * criteria match everything, so a new TransactionQuery matches all rows.
+ * Criteria combine with AND; the category and payment method facets each
+ * match any of their selected values.
+ */
+public class TransactionQuery {
+    // Facet names, also the column each facet groups by
+    public static final String CATEGORY = "category";
+    public static final String PAYMENT_METHOD = "payment_method";
+    public static final String TYPE = "is_income";
+
+    private Long minAmountCents;
+    private Long maxAmountCents;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private final Set<String> categories = new LinkedHashSet<>();
+    private final Set<String> paymentMethods = new LinkedHashSet<>();
+    private Boolean isIncome;
+    private Boolean recurring;
+    private String text;
+
+    /**
+     * Number of matching transactions per facet value
+     */
+    public static class FacetCounts {
+        private final int total;
+        private final Map<String, Integer> categories;
+        private final Map<String, Integer> paymentMethods;
+        private final Map<String, Integer> types;
+
+        public FacetCounts(int total, Map<String, Integer> categories, Map<String, Integer> paymentMethods,
+                           Map<String, Integer> types) {
+            this.total = total;
+            this.categories = categories;
+            this.paymentMethods = paymentMethods;
+            this.types = types;
+        }
+
+        /** Rows matching the whole query */
+        public int getTotal() { return total; }
+
+        /** Counts per category, ignoring the query's own category selection */
+        public Map<String, Integer> getCategories() { return categories; }
+
+        /** Counts per payment method, ignoring the query's own payment method selection */
+        public Map<String, Integer> getPaymentMethods() { return paymentMethods; }
+
+        /** Counts for "Income" and "Expense", ignoring the query's own type selection */
+        public Map<String, Integer> getTypes() { return types; }
+    }
+
+    public TransactionQuery() {
+    }
+
+    /**
+     * Copy of another query
+     */
+    public TransactionQuery(TransactionQuery other) {
+        this.minAmountCents = other.minAmountCents;
+        this.maxAmountCents = other.maxAmountCents;
+        this.startDate = other.startDate;
+        this.endDate = other.endDate;
+        this.categories.addAll(other.categories);
+        this.paymentMethods.addAll(other.paymentMethods);
+        this.isIncome = other.isIncome;
+        this.recurring = other.recurring;
+        this.text = other.text;
+    }
+
+    /**
+     * Copy of this query without one facet's criterion, used to count the
+     * alternatives within that facet
+     *
+     * @param facet CATEGORY, PAYMENT_METHOD or TYPE
+     */
+    public TransactionQuery without(String facet) {
+        TransactionQuery copy = new TransactionQuery(this);
+        switch (facet) {
+            case CATEGORY:
+                copy.categories.clear();
+                break;
+            case PAYMENT_METHOD:
+                copy.paymentMethods.clear();
+                break;
+            case TYPE:
+                copy.isIncome = null;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown facet: " + facet);
+        }
+        return copy;
+    }
+
+    /**
+     * Appends " AND ..." conditions for the set criteria to a statement over
+     * the transactions table, collecting the parameters to bind
+     */
+    void appendConditions(StringBuilder sql, List<Object> params) {
+        if (minAmountCents != null) {
+            sql.append(" AND amount_cents >= ?");
+            params.add(minAmountCents);
+        }
+        if (maxAmountCents != null) {
+            sql.append(" AND amount_cents <= ?");
+            params.add(maxAmountCents);
+        }
+        if (startDate != null) {
+            sql.append(" AND transaction_date >= ?");
+            params.add(Date.valueOf(startDate));
+        }
+        if (endDate != null) {
+            sql.append(" AND transaction_date <= ?");
+            params.add(Date.valueOf(endDate));
+        }
+        appendIn(sql, params, CATEGORY, categories);
+        appendIn(sql, params, PAYMENT_METHOD, paymentMethods);
+        if (isIncome != null) {
+            sql.append(" AND is_income = ?");
+            params.add(isIncome);
+        }
+        if (recurring != null) {
+            // A literal rather than a parameter, so the partial recurring index can be used
+            sql.append(recurring ? " AND recurring = 1" : " AND recurring = 0");
+        }
+        if (text != null) {
+            String pattern = "%" + text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+            sql.append(" AND (category LIKE ? ESCAPE '\\' OR payment_method LIKE ? ESCAPE '\\')");
+            params.add(pattern);
+            params.add(pattern);
+        }
+    }
+
+    /**
+     * Whether a transaction meets the set criteria; the in-memory
+     * counterpart of appendConditions
+     */
+    public boolean matches(Transaction t) {
+        return (minAmountCents == null || t.getAmountCents() >= minAmountCents)
+                && (maxAmountCents == null || t.getAmountCents() <= maxAmountCents)
+                && (startDate == null || !t.getDate().isBefore(startDate))
+                && (endDate == null || !t.getDate().isAfter(endDate))
+                && (categories.isEmpty() || categories.contains(t.getCategory()))
+                && (paymentMethods.isEmpty() || paymentMethods.contains(t.getPaymentMethod()))
+                && (isIncome == null || isIncome == t.isIncome())
+                && (recurring == null || recurring == t.isRecurring())
+                && (text == null || containsText(t.getCategory()) || containsText(t.getPaymentMethod()));
+    }
+
+    private boolean containsText(String value) {
+        // Case-insensitive like LIKE (which only folds ASCII letters)
+        return value != null && value.toLowerCase(Locale.ROOT).contains(text.toLowerCase(Locale.ROOT));
+    }
+
+    static void appendIn(StringBuilder sql, List<Object> params, String column, Collection<String> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        sql.append(" AND ").append(column).append(" IN (");
+        int i = 0;
+        for (String value : values) {
+            sql.append(i++ == 0 ? "?" : ", ?");
+            params.add(value);
+        }
+        sql.append(")");
+    }
+
+    /**
+     * Whether only criteria the monthly summary tables can answer are set:
+     * whole-month date bounds, type, and the category/payment facets
+     */
+    boolean isSummarizable() {
+        return minAmountCents == null && maxAmountCents == null && recurring == null && text == null
+                && (startDate == null || startDate.getDayOfMonth() == 1)
+                && (endDate == null || endDate.getDayOfMonth() == endDate.lengthOfMonth());
+    }
+
+    public boolean isEmpty() {
+        return minAmountCents == null && maxAmountCents == null && startDate == null && endDate == null
+                && categories.isEmpty() && paymentMethods.isEmpty() && isIncome == null && recurring == null
+                && text == null;
+    }
+
+    public void setAmountRange(Long minAmountCents, Long maxAmountCents) {
+        this.minAmountCents = minAmountCents;
+        this.maxAmountCents = maxAmountCents;
+    }
+
+    public void setDateRange(LocalDate startDate, LocalDate endDate) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+    }
+
+    public void setCategories(Collection<String> categories) {
+        this.categories.clear();
+        this.categories.addAll(categories);
+    }
+
+    public void setPaymentMethods(Collection<String> paymentMethods) {
+        this.paymentMethods.clear();
+        this.paymentMethods.addAll(paymentMethods);
+    }
+
+    /**
+     * @param isIncome true for income, false for expenses, null for both
+     */
+    public void setIncome(Boolean isIncome) {
+        this.isIncome = isIncome;
+    }
+
+    /**
+     * @param recurring true for recurring only, false for one-off only, null for both
+     */
+    public void setRecurring(Boolean recurring) {
+        this.recurring = recurring;
+    }
+
+    /**
+     * Free text matched case-insensitively against category and payment
+     * method; null or blank to match everything
+     */
+    public void setText(String text) {
+        this.text = text == null || text.trim().isEmpty() ? null : text.trim();
+    }
+
+    public Long getMinAmountCents() { return minAmountCents; }
+    public Long getMaxAmountCents() { return maxAmountCents; }
+    public LocalDate getStartDate() { return startDate; }
+    public LocalDate getEndDate() { return endDate; }
+    public Set<String> getCategories() { return categories; }
+    public Set<String> getPaymentMethods() { return paymentMethods; }
+    public Boolean getIncome() { return isIncome; }
+    public Boolean getRecurring() { return recurring; }
+    public String getText() { return text; }
+
+    @Override
+    public String toString() {
+        Map<String, Object> set = new LinkedHashMap<>();
+        set.put("amount", minAmountCents == null && maxAmountCents == null ? null
+                : (minAmountCents == null ? "" : Money.format(minAmountCents)) + ".."
+                + (maxAmountCents == null ? "" : Money.format(maxAmountCents)));
+        set.put("date", startDate == null && endDate == null ? null
+                : (startDate == null ? "" : startDate) + ".." + (endDate == null ? "" : endDate));
+        set.put("categories", categories.isEmpty() ? null : categories);
+        set.put("paymentMethods", paymentMethods.isEmpty() ? null : paymentMethods);
+        set.put("income", isIncome);
+        set.put("recurring", recurring);
+        set.put("text", text);
+        set.values().removeIf(value -> value == null);
+        return "TransactionQuery" + set;
+    }
+}
@@ -0,0 +1,311 @@
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalAdjusters;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Income and expense totals over time, bucketed by day, week, month,
+ * quarter and year up front, so a chart can show any date range at the
+ * level of detail its width allows. Buckets are dense (empty ones hold 0)
+ * and ordered, so the buckets in view are found by binary search and the
+ * work per render depends on the width of the chart, not on how many years
+ * the ledger covers. Dates are handled as epoch days.
+ */
+public class TrendSeries {
+
+    /**
+     * A bucket size, from finest to coarsest
+     */
+    public enum Level {
+        DAY("Daily", 1),
+        WEEK("Weekly", 7),
+        MONTH("Monthly", 30.44),
+        QUARTER("Quarterly", 91.31),
+        YEAR("Yearly", 365.25);
+
+        private final String title;
+        private final double averageDays;
+
+        Level(String title, double averageDays) {
+            this.title = title;
+            this.averageDays = averageDays;
+        }
+
+        public String getTitle() { return title; }
+
+        /**
+         * First day of the bucket containing a date
+         */
+        LocalDate bucketStart(LocalDate date) {
+            switch (this) {
+                case DAY: return date;
+                case WEEK: return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH: return date.withDayOfMonth(1);
+                case QUARTER: return date.withDayOfMonth(1).withMonth((date.getMonthValue() - 1) / 3 * 3 + 1);
+                default: return date.withDayOfYear(1);
+            }
+        }
+
+        /**
+         * First day of the bucket after the one starting on start
+         */
+        LocalDate nextBucket(LocalDate start) {
+            switch (this) {
+                case DAY: return start.plusDays(1);
+                case WEEK: return start.plusWeeks(1);
+                case MONTH: return start.plusMonths(1);
+                case QUARTER: return start.plusMonths(3);
+                default: return start.plusYears(1);
+            }
+        }
+
+        /**
+         * Axis label for the bucket starting on start
+         */
+        String label(LocalDate start) {
+            switch (this) {
+                case MONTH: return start.getYear() + "-" + String.format("%02d", start.getMonthValue());
+                case QUARTER: return start.getYear() + "-Q" + start.get(IsoFields.QUARTER_OF_YEAR);
+                case YEAR: return String.valueOf(start.getYear());
+                default: return start.toString();
+            }
+        }
+    }
+
+    /**
+     * The buckets of one level; startDays has one extra entry, the end of the last bucket
+     */
+    private static class Buckets {
+        private final long[] startDays;
+        private final long[] income;
+        private final long[] expenses;
+
+        Buckets(long[] startDays, long[] income, long[] expenses) {
+            this.startDays = startDays;
+            this.income = income;
+            this.expenses = expenses;
+        }
+    }
+
+    /**
+     * The buckets overlapping a date range, ready to draw
+     */
+    public static class Slice {
+        private final Level level;
+        private final double[] centerDays;
+        private final long[] income;
+        private final long[] expenses;
+        private final String[] labels;
+
+        Slice(Level level, double[] centerDays, long[] income, long[] expenses, String[] labels) {
+            this.level = level;
+            this.centerDays = centerDays;
+            this.income = income;
+            this.expenses = expenses;
+            this.labels = labels;
+        }
+
+        public Level getLevel() { return level; }
+        public int size() { return centerDays.length; }
+
+        /** Middle of each bucket, in epoch days */
+        public double[] getCenterDays() { return centerDays; }
+
+        /** Totals in cents, one per bucket */
+        public long[] getIncome() { return income; }
+        public long[] getExpenses() { return expenses; }
+        public String[] getLabels() { return labels; }
+    }
+
+    private final Map<Level, Buckets> levels = new EnumMap<>(Level.class);
+    private final long firstDay;
+    private final long endDay;
+
+    /**
+     * @param dailyIncome Income per day in cents
+     * @param dailyExpenses Expenses per day in cents
+     */
+    public TrendSeries(Map<LocalDate, Long> dailyIncome, Map<LocalDate, Long> dailyExpenses) {
+        TreeSet<LocalDate> dates = new TreeSet<>(dailyIncome.keySet());
+        dates.addAll(dailyExpenses.keySet());
+        if (dates.isEmpty()) {
+            firstDay = 0;
+            endDay = 0;
+            return;
+        }
+
+        LocalDate first = dates.first();
+        LocalDate last = dates.last();
+        firstDay = first.toEpochDay();
+        endDay = last.toEpochDay() + 1;
+
+        for (Level level : Level.values()) {
+            levels.put(level, bucket(level, first, last, dailyIncome, dailyExpenses));
+        }
+    }
+
+    private static Buckets bucket(Level level, LocalDate first, LocalDate last,
+                                  Map<LocalDate, Long> dailyIncome, Map<LocalDate, Long> dailyExpenses) {
+        LocalDate firstStart = level.bucketStart(first);
+        int count = 0;
+        for (LocalDate start = firstStart; !start.isAfter(last); start = level.nextBucket(start)) {
+            count++;
+        }
+
+        long[] startDays = new long[count + 1];
+        LocalDate start = firstStart;
+        for (int i = 0; i <= count; i++) {
+            startDays[i] = start.toEpochDay();
+            start = level.nextBucket(start);
+        }
+
+        long[] income = new long[count];
+        long[] expenses = new long[count];
+        add(income, startDays, dailyIncome);
+        add(expenses, startDays, dailyExpenses);
+        return new Buckets(startDays, income, expenses);
+    }
+
+    private static void add(long[] totals, long[] startDays, Map<LocalDate, Long> daily) {
+        for (Map.Entry<LocalDate, Long> entry : daily.entrySet()) {
+            totals[bucketIndex(startDays, entry.getKey().toEpochDay())] += entry.getValue();
+        }
+    }
+
+    /**
+     * Index of the bucket containing day, clamped to the buckets that exist
+     */
+    private static int bucketIndex(long[] startDays, double day) {
+        int low = 0;
+        int high = startDays.length - 2;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (startDays[mid] <= day) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    public boolean isEmpty() {
+        return levels.isEmpty();
+    }
+
+    /** First day with data, in epoch days */
+    public long getFirstDay() { return firstDay; }
+
+    /** Day after the last day with data, in epoch days */
+    public long getEndDay() { return endDay; }
+
+    /**
+     * The finest level that fits at most maxBuckets buckets into a range
+     *
+     * @param startDay Start of the range in epoch days
+     * @param endDay End of the range (exclusive) in epoch days
+     */
+    public static Level levelFor(double startDay, double endDay, int maxBuckets) {
+        for (Level level : Level.values()) {
+            if ((endDay - startDay) / level.averageDays <= maxBuckets) {
+                return level;
+            }
+        }
+        return Level.YEAR;
+    }
+
+    /**
+     * The buckets of a level overlapping a date range
+     *
+     * @param startDay Start of the range in epoch days
+     * @param endDay End of the range (exclusive) in epoch days
+     */
+    public Slice slice(Level level, double startDay, double endDay) {
+        Buckets buckets = levels.get(level);
+        if (buckets == null || endDay <= firstDay || startDay >= this.endDay) {
+            return new Slice(level, new double[0], new long[0], new long[0], new String[0]);
+        }
+
+        int from = bucketIndex(buckets.startDays, startDay);
+        int to = bucketIndex(buckets.startDays, Math.nextDown(endDay)) + 1;
+        int count = to - from;
+
+        double[] centerDays = new double[count];
+        String[] labels = new String[count];
+        for (int i = 0; i < count; i++) {
+            long start = buckets.startDays[from + i];
+            centerDays[i] = (start + buckets.startDays[from + i + 1]) / 2.0;
+            labels[i] = level.label(LocalDate.ofEpochDay(start));
+        }
+        long[] income = new long[count];
+        long[] expenses = new long[count];
+        System.arraycopy(buckets.income, from, income, 0, count);
+        System.arraycopy(buckets.expenses, from, expenses, 0, count);
+        return new Slice(level, centerDays, income, expenses, labels);
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets downsampling: picks threshold points
+     * that keep the visual shape of a line, including its peaks and dips.
+     * The first and last points are always kept.
+     *
+     * @param x Point positions, ascending
+     * @param y Point values
+     * @param threshold Number of points wanted
+     * @return Indexes of the kept points, ascending; all of them if there
+     *         are no more than threshold points
+     */
+    public static int[] downsample(double[] x, long[] y, int threshold) {
+        int n = x.length;
+        if (threshold >= n || threshold < 3) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        int[] kept = new int[threshold];
+        // Points between the first and last are split into threshold - 2 buckets
+        double bucketSize = (double) (n - 2) / (threshold - 2);
+        int selected = 0;
+        kept[0] = 0;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // The average of the next bucket is the third corner of the triangle
+            int nextFrom = (int) ((bucket + 1) * bucketSize) + 1;
+            int nextTo = Math.min((int) ((bucket + 2) * bucketSize) + 1, n);
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = nextFrom; i < nextTo; i++) {
+                averageX += x[i];
+                averageY += y[i];
+            }
+            int nextCount = nextTo - nextFrom;
+            averageX /= nextCount;
+            averageY /= nextCount;
+
+            // Keep the point of this bucket forming the largest triangle with the last kept point
+            int from = (int) (bucket * bucketSize) + 1;
+            int to = (int) ((bucket + 1) * bucketSize) + 1;
+            double maxArea = -1;
+            int best = from;
+            for (int i = from; i < to; i++) {
+                double area = Math.abs((x[selected] - averageX) * (y[i] - y[selected])
+                        - (x[selected] - x[i]) * (averageY - y[selected]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    best = i;
+                }
+            }
+            kept[bucket + 1] = best;
+            selected = best;
+        }
+
+        kept[threshold - 1] = n - 1;
+        return kept;
+    }
+}